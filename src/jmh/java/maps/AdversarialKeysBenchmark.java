@@ -0,0 +1,134 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static maps.HashMapBenchmark.selectAsciiHashCodeComputer;
+
+/**
+ * Keys crafted to collide: every key is a sequence of "Aa" and "BB" blocks, so all of them have the same
+ * default (31 * h + b) hash code and land in a single probe chain.
+ * <p>
+ * Without the probe length guard every operation walks the chain of all live keys. With the guard the first long
+ * insert re-seeds the table (seeded xxHash, see {@link HashCodeComputer#withSeed}) and operations stay short:
+ * compare p0.99 and p1.0 of the sample histograms.
+ */
+@Fork(value=3, jvmArgs = { "-Xms2G", "-Xmx2G", "-XX:+AlwaysPreTouch" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.SampleTime)
+@State(Scope.Thread)
+@Threads(1)
+public class AdversarialKeysBenchmark {
+    private static final int KEY_BLOCKS = 14;
+    private static final int KEY_UNIVERSE_SIZE = 1 << KEY_BLOCKS;
+    private static final int KEY_UNIVERSE_MASK = (KEY_UNIVERSE_SIZE - 1);
+
+    private static final int MAX_ACTIVE_KEYS = 2048;
+    private static final int MAX_INACTIVE_KEYS = 512;
+    private static final int MAX_PROBE_LENGTH = 64;
+
+    @Param({"off", "on"})
+    private String guard = "on";
+
+    @Param({"default"})
+    private String hashStrategy = "default";
+
+    @Param({"linearprobe", "rawLinearprobe", "nativeLinearprobe", "robinhood", "offHeapRawLinearprobe", "arenaRawLinearprobe",
+            "inlineKeyLinearprobe", "swissTable", "stableSlot", "cuckoo", "hopscotch"})
+    private String mapClass = "linearprobe";
+
+    private Cache map;
+    private DataPayload[] universe;
+    private long nextKeyId;
+    private final Random random = new Random(42);
+    private int reseeds;
+
+    @Setup
+    public void init() {
+        universe = new DataPayload[KEY_UNIVERSE_SIZE];
+        for (int i = 0; i < KEY_UNIVERSE_SIZE; i++) {
+            universe[i] = new DataPayload(collidingKey(i));
+        }
+
+        map = selectCache(mapClass);
+        if (guard.equals("on")) {
+            map.setProbeLengthGuard(MAX_PROBE_LENGTH, (probeLength, size, capacity) -> reseeds++);
+        }
+
+        for (nextKeyId = 0; nextKeyId < MAX_ACTIVE_KEYS; nextKeyId++) {
+            map.putIfEmpty(universe[(int) nextKeyId]);
+        }
+        // settle the number of inactive entries
+        for (int i = 0; i < 4 * MAX_INACTIVE_KEYS; i++) {
+            putNewestDeactivateOldest();
+        }
+    }
+
+    @TearDown
+    public void reportReseeds() throws Exception {
+        System.out.println("re-seeds: " + reseeds);
+        if (map instanceof AutoCloseable closeable) {
+            closeable.close(); // off-heap maps release native memory
+        }
+    }
+
+    private static AsciiString collidingKey(int i) {
+        AsciiString key = new AsciiString(2 * KEY_BLOCKS);
+        for (int block = 0; block < KEY_BLOCKS; block++) {
+            key.append(((i >>> block) & 1) == 0 ? "Aa" : "BB");
+        }
+        return key;
+    }
+
+    /** Puts the newest key, looks up a random live one and deactivates the oldest one */
+    @Benchmark
+    public DataPayload putNewestDeactivateOldest() {
+        map.putIfEmpty(universe[(int) (nextKeyId & KEY_UNIVERSE_MASK)]);
+
+        final long liveKeyId = nextKeyId - random.nextInt(MAX_ACTIVE_KEYS);
+        DataPayload found = map.get(universe[(int) (liveKeyId & KEY_UNIVERSE_MASK)].getKey());
+
+        map.deactivate(universe[(int) ((nextKeyId - MAX_ACTIVE_KEYS) & KEY_UNIVERSE_MASK)]);
+        nextKeyId++;
+        return found;
+    }
+
+    private Cache selectCache(String cacheClass) {
+        final int cacheCapacity = 2 * MAX_ACTIVE_KEYS;
+        final HashCodeComputer hash = selectAsciiHashCodeComputer(hashStrategy);
+
+        return switch (cacheClass) {
+            case "linearprobe" -> new LinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "rawLinearprobe" -> new RawLinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "nativeLinearprobe" -> new NativeLinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "robinhood" -> new RobinHoodHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "offHeapRawLinearprobe" -> new OffHeapRawLinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "arenaRawLinearprobe" -> new ArenaRawLinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "inlineKeyLinearprobe" -> new InlineKeyLinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "swissTable" -> new SwissTableHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "stableSlot" -> new StableSlotHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "cuckoo" -> new CuckooHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "hopscotch" -> new HopscotchHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            default -> throw new IllegalArgumentException(cacheClass);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(AdversarialKeysBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,171 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static maps.HashMapBenchmark.selectAsciiHashCodeComputer;
+
+/**
+ * Batched getAll / putAllIfEmpty against the single-key loop, in ns per key.
+ * <p>
+ * The map holds 1M keys in 4M slots, so almost every lookup of a random key misses the CPU caches.
+ * Every invocation handles {@link #KEYS_PER_INVOCATION} keys in batches of {@code batchSize}:
+ * batchSize=1 is the single-key path, bigger batches let the map overlap the cache misses of their keys.
+ * Maps without a batched implementation (chaining) show the cost of the default loop.
+ */
+@Fork(value=3, jvmArgs = { "-Xms4G", "-Xmx4G", "-XX:+AlwaysPreTouch" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Thread)
+@Threads(1)
+public class BatchLookupBenchmark {
+    private static final long BASE_KEY_ID = 1_000_000_000_000L;
+
+    private static final int KEY_UNIVERSE_SIZE = 2097152;
+    private static final int KEY_UNIVERSE_MASK = (KEY_UNIVERSE_SIZE - 1);
+
+    private static final int MAX_ACTIVE_KEYS = 1048576;
+    private static final int MAX_INACTIVE_KEYS = 4096;
+
+    private static final int KEYS_PER_INVOCATION = 64;
+    private static final int LOOKUP_SEQUENCE_SIZE = 1048576;
+
+    @Param({"1", "4", "16", "64"})
+    private int batchSize;
+
+    @Param({"xxHash"})
+    private String hashStrategy = "xxHash";
+
+    @Param({"linearprobe", "rawLinearprobe", "nativeLinearprobe", "swissTable", "chaining"})
+    private String mapClass = "linearprobe";
+
+    @Param({"number", "uuid"})
+    private String keyNaming = "number";
+
+    private Cache map;
+    private DataPayload[] universe;
+    private AsciiString[] lookups; // random active keys
+    private int nextLookup;
+    private long nextKeyId;
+
+    private AsciiString[] keyBatch;
+    private DataPayload[] entryBatch;
+    private DataPayload[] found;
+    private boolean[] added;
+
+    @Setup
+    public void init() {
+        if (batchSize <= 0 || KEYS_PER_INVOCATION % batchSize != 0) {
+            throw new IllegalArgumentException("batchSize must divide " + KEYS_PER_INVOCATION);
+        }
+
+        KeyNamingStrategy keyNamingStrategy = KeyNamingStrategy.select(keyNaming);
+        universe = new DataPayload[KEY_UNIVERSE_SIZE];
+        for (int i = 0; i < KEY_UNIVERSE_SIZE; i++) {
+            universe[i] = new DataPayload(keyNamingStrategy.formatKey(i + BASE_KEY_ID));
+        }
+
+        map = selectCache(mapClass);
+        for (nextKeyId = 0; nextKeyId < MAX_ACTIVE_KEYS; nextKeyId++) {
+            map.putIfEmpty(universe[(int) nextKeyId]);
+        }
+
+        // oldest keys get deactivated by putAll, so lookups keep away from them
+        Random random = new Random(42);
+        lookups = new AsciiString[LOOKUP_SEQUENCE_SIZE];
+        for (int i = 0; i < LOOKUP_SEQUENCE_SIZE; i++) {
+            lookups[i] = universe[MAX_ACTIVE_KEYS / 2 + random.nextInt(MAX_ACTIVE_KEYS / 2)].getKey();
+        }
+
+        keyBatch = new AsciiString[batchSize];
+        entryBatch = new DataPayload[batchSize];
+        found = new DataPayload[batchSize];
+        added = new boolean[batchSize];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS_PER_INVOCATION)
+    public int singleKeyLoop() {
+        int hits = 0;
+        for (int i = 0; i < KEYS_PER_INVOCATION; i++) {
+            if (map.get(lookups[nextLookup]) != null) {
+                hits++;
+            }
+            nextLookup = (nextLookup + 1) & (LOOKUP_SEQUENCE_SIZE - 1);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS_PER_INVOCATION)
+    public int getAll() {
+        int hits = 0;
+        for (int done = 0; done < KEYS_PER_INVOCATION; done += batchSize) {
+            for (int i = 0; i < batchSize; i++) {
+                keyBatch[i] = lookups[nextLookup];
+                nextLookup = (nextLookup + 1) & (LOOKUP_SEQUENCE_SIZE - 1);
+            }
+            map.getAll(keyBatch, batchSize, found);
+            for (int i = 0; i < batchSize; i++) {
+                if (found[i] != null) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    /** Puts the newest keys in batches and deactivates as many oldest ones, so the map size stays the same */
+    @Benchmark
+    @OperationsPerInvocation(KEYS_PER_INVOCATION)
+    public int putAllIfEmpty() {
+        int puts = 0;
+        for (int done = 0; done < KEYS_PER_INVOCATION; done += batchSize) {
+            for (int i = 0; i < batchSize; i++) {
+                entryBatch[i] = universe[(int) (nextKeyId & KEY_UNIVERSE_MASK)];
+                map.deactivate(universe[(int) ((nextKeyId - MAX_ACTIVE_KEYS) & KEY_UNIVERSE_MASK)]);
+                nextKeyId++;
+            }
+            map.putAllIfEmpty(entryBatch, batchSize, added);
+            for (int i = 0; i < batchSize; i++) {
+                if (added[i]) {
+                    puts++;
+                }
+            }
+        }
+        return puts;
+    }
+
+    private Cache selectCache(String cacheClass) {
+        final int cacheCapacity = 2 * MAX_ACTIVE_KEYS;
+        final HashCodeComputer hash = selectAsciiHashCodeComputer(hashStrategy);
+
+        return switch (cacheClass) {
+            case "linearprobe" -> new LinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "rawLinearprobe" -> new RawLinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "nativeLinearprobe" -> new NativeLinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "swissTable" -> new SwissTableHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "chaining" -> new ChainingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            default -> throw new IllegalArgumentException(cacheClass);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BatchLookupBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,118 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.DataPayload;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static maps.HashMapBenchmark.selectAsciiHashCodeComputer;
+
+/**
+ * Cost of TTL expiry of inactive entries when deactivations come in bursts.
+ * <p>
+ * The clock is simulated: on average there is one put newest / deactivate oldest cycle per {@link #MEAN_OP_NANOS},
+ * but the cycles come in bursts of {@code burstLength} cycles {@link #IN_BURST_NANOS} apart followed by a gap.
+ * A whole burst expires at about the same time, so a single tick may free many entries: look at p0.999 and p1.0
+ * of the sample histogram. With ttlMicros=0 there is no TTL and only the maxInactiveKeys cap evicts entries.
+ */
+@Fork(value=3, jvmArgs = { "-Xms4G", "-Xmx4G", "-XX:+AlwaysPreTouch" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.SampleTime)
+@State(Scope.Thread)
+@Threads(1)
+public class BurstyExpiryBenchmark {
+    private static final long BASE_KEY_ID = 1_000_000_000_000L;
+
+    private static final int KEY_UNIVERSE_SIZE = 262144;
+    private static final int KEY_UNIVERSE_MASK = (KEY_UNIVERSE_SIZE - 1);
+
+    private static final int MAX_ACTIVE_KEYS = 65536;
+    private static final int MAX_INACTIVE_KEYS = 16384;
+
+    private static final long MEAN_OP_NANOS = 1000;
+    private static final long IN_BURST_NANOS = 10;
+
+    @Param({"0", "1000", "10000"})
+    private long ttlMicros;
+
+    @Param({"1", "100", "4096"})
+    private int burstLength;
+
+    @Param({"xxHash"})
+    private String hashStrategy = "xxHash";
+
+    @Param({"chaining", "linearprobe", "swissTable", "stableSlot"})
+    private String mapClass = "linearprobe";
+
+    @Param({"number"})
+    private String keyNaming = "number";
+
+    private Cache map;
+    private long nextKeyId;
+    private long nowNanos;
+    private DataPayload[] universe;
+
+    @Setup
+    public void init() {
+        KeyNamingStrategy keyNamingStrategy = KeyNamingStrategy.select(keyNaming);
+        universe = new DataPayload[KEY_UNIVERSE_SIZE];
+        for (int i = 0; i < KEY_UNIVERSE_SIZE; i++) {
+            universe[i] = new DataPayload(keyNamingStrategy.formatKey(i + BASE_KEY_ID));
+        }
+
+        map = selectCache(mapClass);
+        if (ttlMicros > 0) {
+            map.setInactiveTtl(TimeUnit.MICROSECONDS.toNanos(ttlMicros));
+        }
+
+        for (nextKeyId = 0; nextKeyId < MAX_ACTIVE_KEYS; nextKeyId++) {
+            map.putIfEmpty(universe[(int) nextKeyId]);
+        }
+        // settle the number of inactive entries
+        for (int i = 0; i < 4 * MAX_INACTIVE_KEYS; i++) {
+            putNewestDeactivateOldest();
+        }
+    }
+
+    @Benchmark
+    public boolean putNewestDeactivateOldest() {
+        final long burstPosition = nextKeyId % burstLength;
+        nowNanos += (burstPosition == 0) ? burstLength * (MEAN_OP_NANOS - IN_BURST_NANOS) + IN_BURST_NANOS : IN_BURST_NANOS;
+
+        boolean isNew = map.putIfEmpty(universe[(int) (nextKeyId & KEY_UNIVERSE_MASK)]);
+
+        final int oldestActive = (int) ((nextKeyId - MAX_ACTIVE_KEYS) & KEY_UNIVERSE_MASK);
+        map.deactivate(universe[oldestActive], nowNanos);
+
+        nextKeyId++;
+        return isNew;
+    }
+
+    private Cache selectCache(String cacheClass) {
+        final int cacheCapacity = 2 * MAX_ACTIVE_KEYS;
+        final HashCodeComputer hash = selectAsciiHashCodeComputer(hashStrategy);
+
+        return switch (cacheClass) {
+            case "chaining" -> new ChainingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "linearprobe" -> new LinearProbingHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "swissTable" -> new SwissTableHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            case "stableSlot" -> new StableSlotHashMap(cacheCapacity, MAX_INACTIVE_KEYS, hash);
+            default -> throw new IllegalArgumentException(cacheClass);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BurstyExpiryBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,142 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.DataPayload;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static maps.HashMapBenchmark.selectAsciiHashCodeComputer;
+
+/**
+ * Thread safe caches under contention. Keys are split into {@link #MAX_THREADS} disjoint slices,
+ * every benchmark thread owns one slice and runs the HashMapBenchmark cycle (get / deactivate oldest / put newest) on it.
+ * Map is prepopulated with all slices, so its size does not depend on the number of threads.
+ * <p>
+ * {@link #main} runs {@code mixed} with 1 to 32 threads; {@code readWrite} group is one writer and three readers
+ * of the slices nobody writes to (scale it with {@code -tg 1,N}).
+ */
+@Fork(value=3, jvmArgs = { "-Xms4G", "-Xmx4G", "-XX:+AlwaysPreTouch" })
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 15)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+public class ConcurrentHashMapBenchmark {
+    private static final long BASE_KEY_ID = 1_000_000_000_000L;
+
+    static final int MAX_THREADS = 32;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    private static final int MAX_ACTIVE_KEYS = 1048576;
+    private static final int ACTIVE_KEYS_PER_SLICE = MAX_ACTIVE_KEYS / MAX_THREADS;
+    private static final int SLICE_UNIVERSE_SIZE = 4 * ACTIVE_KEYS_PER_SLICE;
+    private static final int SLICE_UNIVERSE_MASK = (SLICE_UNIVERSE_SIZE - 1);
+
+    @Param({"4096"})
+    private int maxInactiveKeys = 4096;
+
+    @Param({"xxHash"})
+    private String hashStrategy = "xxHash";
+
+    @Param({"striped", "globalLock", "concurrentJavaUtil"})
+    private String mapClass = "striped";
+
+    @Param({"number", "fixed_prefix", "uuid"})
+    private String keyNaming = "number";
+
+    private Cache map;
+    private DataPayload[][] universe; // [slice][sequence]
+    private final AtomicInteger nextSlice = new AtomicInteger();
+
+    @Setup
+    public void init() {
+        map = selectCache(mapClass);
+
+        KeyNamingStrategy keyNamingStrategy = KeyNamingStrategy.select(keyNaming);
+        universe = new DataPayload[MAX_THREADS][SLICE_UNIVERSE_SIZE];
+        for (int i = 0; i < SLICE_UNIVERSE_SIZE; i++) {
+            for (int slice = 0; slice < MAX_THREADS; slice++) {
+                universe[slice][i] = new DataPayload(keyNamingStrategy.formatKey((long) i * MAX_THREADS + slice + BASE_KEY_ID));
+            }
+        }
+
+        for (int i = 0; i < ACTIVE_KEYS_PER_SLICE; i++) {
+            for (int slice = 0; slice < MAX_THREADS; slice++) {
+                if (!map.putIfEmpty(universe[slice][i]))
+                    throw new IllegalStateException("Duplicate");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Slice {
+        DataPayload[] keys;
+        long nextKeyId = ACTIVE_KEYS_PER_SLICE;
+
+        @Setup
+        public void init(ConcurrentHashMapBenchmark benchmark) {
+            keys = benchmark.universe[benchmark.nextSlice.getAndIncrement() % MAX_THREADS];
+        }
+    }
+
+    private Cache selectCache(String cacheClass) {
+        final HashCodeComputer hash = selectAsciiHashCodeComputer(hashStrategy);
+
+        return switch (cacheClass) {
+            case "striped" -> new StripedHashMap(2 * MAX_ACTIVE_KEYS, maxInactiveKeys, hash);
+            case "globalLock" -> new StripedHashMap(2 * MAX_ACTIVE_KEYS, maxInactiveKeys, hash, 1);
+            case "concurrentJavaUtil" -> new ConcurrentJavaHashMap(2 * MAX_ACTIVE_KEYS, maxInactiveKeys);
+            default -> throw new IllegalArgumentException(cacheClass);
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3)
+    public boolean mixed(Slice slice) {
+        final DataPayload oldest = slice.keys[(int) ((slice.nextKeyId - ACTIVE_KEYS_PER_SLICE) & SLICE_UNIVERSE_MASK)];
+        boolean exist = map.get(oldest.getKey()) != null; // GET
+        map.deactivate(oldest);                                     // REMOVE
+        boolean isNew = map.putIfEmpty(slice.keys[(int) (slice.nextKeyId & SLICE_UNIVERSE_MASK)]); // PUT
+        slice.nextKeyId++;
+        return exist & isNew;
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    @OperationsPerInvocation(2)
+    public boolean writer(Slice slice) {
+        map.deactivate(slice.keys[(int) ((slice.nextKeyId - ACTIVE_KEYS_PER_SLICE) & SLICE_UNIVERSE_MASK)]);
+        boolean isNew = map.putIfEmpty(slice.keys[(int) (slice.nextKeyId & SLICE_UNIVERSE_MASK)]);
+        slice.nextKeyId++;
+        return isNew;
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public DataPayload reader() {
+        // slices from the upper half are only written during setup
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        DataPayload[] keys = universe[MAX_THREADS / 2 + rnd.nextInt(MAX_THREADS / 2)];
+        return map.get(keys[rnd.nextInt(ACTIVE_KEYS_PER_SLICE)].getKey());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREAD_COUNTS) {
+            Options opt = new OptionsBuilder()
+                    .include(ConcurrentHashMapBenchmark.class.getSimpleName() + ".mixed")
+                    .threads(threads)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package maps;
 
 import hashing.HashCodeComputer;
+import hashing.PrefixSkippingHashCodeComputer;
 import internal.AsciiString;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.Runner;
@@ -11,6 +12,10 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 import java.lang.reflect.Field;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Run with {@code -prof gc}: every computer should show gc.alloc.rate.norm of 0 B/op.
+ * The batch benchmarks report keys per nanosecond of {@link HashCodeComputer#hashAll} and of the one key at a time loop.
+ */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.NANOSECONDS)
 @State(Scope.Benchmark)
@@ -27,18 +32,28 @@ public class HashCodeComputerBenchmark {
             "hashing.UnrolledDefaultHashCodeComputer",
             "hashing.vhHashCodeComputer",
             "hashing.XxHashCodeComputer",
-            "hashing.vhFasterHashCodeComputer"
+            "hashing.vhFasterHashCodeComputer",
+            "hashing.VectorizedDefaultHashCodeComputer",
+            "hashing.VectorizedNativeHashCodeComputer",
+            "hashing.PrefixSkippingHashCodeComputer"
     })
     private String hashCodeComputerClassName;
 
-    @Param({"8", "16", "32"})
+    @Param({"8", "16", "32", "64"})
     private int stringLength;
 
+    // the prefix of fixed_prefix keys, which PrefixSkippingHashCodeComputer skips; the other computers hash every byte
+    // alike, whatever the bytes. The 8 byte key is shorter than the prefix and hashed whole.
+    private static final String KEY_PREFIX = "SOURCE13:";
+
     private HashCodeComputer hashCodeComputer;
     private AsciiString testString;
 
     private HashCodeComputer instantiateHashCodeComputer(String className) throws Exception {
         Class<?> clazz = Class.forName(className);
+        if (clazz == PrefixSkippingHashCodeComputer.class) {
+            return new PrefixSkippingHashCodeComputer(KEY_PREFIX);
+        }
 
         Field instanceField = clazz.getDeclaredField("INSTANCE");
         instanceField.setAccessible(true);
@@ -50,21 +65,89 @@ public class HashCodeComputerBenchmark {
     public void setup() throws Exception {
         hashCodeComputer = instantiateHashCodeComputer(hashCodeComputerClassName);
 
-        StringBuilder sb = new StringBuilder(stringLength);
-        for (int i = 0; i < stringLength; i++) {
+        StringBuilder sb = new StringBuilder(KEY_PREFIX);
+        for (int i = 0; sb.length() < stringLength; i++) {
             sb.append((char) ('a' + (i % 26)));
         }
-        testString = new AsciiString(sb.toString());
+        testString = new AsciiString(sb.substring(0, stringLength));
     }
 
     @Benchmark
     public int benchmarkHashCode() {
-        return hashCodeComputer.hashCode(testString);
+        return hashCodeComputer.computeHashCode(testString);
     }
 
     @Benchmark
     public int benchmarkModPowerOfTwoHashCode() {
-        return hashCodeComputer.modPowerOfTwoHashCode(testString, 256);
+        return HashCodeComputer.computeModPowerOfTwoHashCode(hashCodeComputer.computeHashCode(testString), 256);
+    }
+
+    /** Repeated lookup of the same key: the hash code comes from the key cache */
+    @Benchmark
+    public int benchmarkCachedHashCode() {
+        return hashCodeComputer.hashCode(testString);
+    }
+
+    /** Keys of one batch benchmark invocation, split into batches of batchSize keys */
+    @State(Scope.Thread)
+    public static class Batches {
+        public static final int KEYS = 64;
+
+        @Param({"1", "4", "8", "16", "32", "64"})
+        private int batchSize;
+
+        private AsciiString[][] keys;
+        private int[][] hashCodes;
+
+        @Setup(Level.Trial)
+        public void setup(HashCodeComputerBenchmark benchmark) {
+            keys = new AsciiString[KEYS / batchSize][batchSize];
+            hashCodes = new int[KEYS / batchSize][batchSize];
+            for (int k = 0; k < KEYS; k++) {
+                StringBuilder sb = new StringBuilder(benchmark.stringLength);
+                for (int i = 0; i < benchmark.stringLength; i++) {
+                    sb.append((char) ('a' + ((i + k) % 26)));
+                }
+                keys[k / batchSize][k % batchSize] = new AsciiString(sb.toString());
+            }
+        }
+
+        // every invocation hashes the keys again
+        private void clearCachedHashes() {
+            for (AsciiString[] batch : keys) {
+                for (AsciiString key : batch) {
+                    key.clearCachedHash();
+                }
+            }
+        }
+    }
+
+    /** Keys per nanosecond of {@link HashCodeComputer#hashAll}, batchSize keys per call */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(Batches.KEYS)
+    public int[][] benchmarkHashAll(Batches batches) {
+        batches.clearCachedHashes();
+        for (int b = 0; b < batches.keys.length; b++) {
+            hashCodeComputer.hashAll(batches.keys[b], batches.batchSize, batches.hashCodes[b]);
+        }
+        return batches.hashCodes;
+    }
+
+    /** Keys per nanosecond of the same keys one at a time, the baseline of {@link #benchmarkHashAll} */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(Batches.KEYS)
+    public int[][] benchmarkHashCodeLoop(Batches batches) {
+        batches.clearCachedHashes();
+        for (int b = 0; b < batches.keys.length; b++) {
+            final AsciiString[] keys = batches.keys[b];
+            final int[] hashCodes = batches.hashCodes[b];
+            for (int i = 0; i < batches.batchSize; i++) {
+                hashCodes[i] = hashCodeComputer.hashCode(keys[i]);
+            }
+        }
+        return batches.hashCodes;
     }
 
     public static void main(String[] args) throws RunnerException {
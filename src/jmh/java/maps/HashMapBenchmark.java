@@ -3,6 +3,10 @@ package maps;
 import hashing.*;
 import internal.AsciiString;
 import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+import internal.LruEvictionPolicy;
+import internal.TinyLfuEvictionPolicy;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -37,17 +41,39 @@ public class HashMapBenchmark {
     private int maxInactiveKeys = 4096;
 
     //NB: closely related to KEY_UNIVERSE_SIZE: > maxInactiveKeys + maxActiveKeys
-    private int maxActiveKeys = 1048576; // must be power of 2
+    private int maxActiveKeys = 1048576; // must be power of 2 unless tableFillPercent is set
+
+    private static final int FIXED_TABLE_SIZE = 2097152;
+    private static final float NO_RESIZE_LOAD_FACTOR = 0.99f;
+
+    // Load factor comparison: 0 keeps the default sizing, otherwise tables get FIXED_TABLE_SIZE slots
+    // and active keys fill them up to the given percent, e.g.
+    // -p tableFillPercent=50,80,90 -p mapClass=linearprobe,robinhood,swissTable,cuckoo,hopscotch
+    @Param({"0"})
+    private int tableFillPercent = 0;
 
     @Param({"xxHash", "default", "unrolledDefault", "nativeHash", "vectorizedDefaultHash"})
     private String hashStrategy = "xxHash";
 
-    @Param({"chaining", "linearprobe", "robinhood", "nativeLinearprobe", "rawLinearprobe", "javaUtil"})
+    @Param({"chaining", "linearprobe", "robinhood", "nativeLinearprobe", "rawLinearprobe",
+            "linearprobeCachedHash", "nativeLinearprobeCachedHash", "rawLinearprobeCachedHash",
+            "offHeapRawLinearprobe", "arenaRawLinearprobe", "decimalLinearprobe", "inlineKeyLinearprobe",
+            "swissTable", "cuckoo", "hopscotch", "stableSlot", "javaUtil"})
     private String mapClass = "javaUtil";
 
     @Param({"number", "fixed_prefix", "uuid"})
     private String keyNaming = "number";
 
+    // Inactive entry eviction: fifo, lru or tinyLfu; see skewedReaccess, the other benchmarks expect FIFO eviction
+    @Param({"fifo"})
+    private String evictionPolicy = "fifo";
+
+    // skewedReaccess looks up every HOT_KEY_STRIDE-th key again until REACCESS_SPAN_FACTOR * maxInactiveKeys more keys are deactivated
+    private static final int HOT_KEY_STRIDE = 64;
+    private static final int REACCESS_SPAN_FACTOR = 8;
+    private static final int REACCESS_PATTERN_SIZE = 65536;
+    private int[] reaccessAges; // how many hot keys back, recent ones are picked more often
+
     private KeyNamingStrategy keyNamingStrategy;
     private Cache map;
     private long nextKeyId;
@@ -55,13 +81,31 @@ public class HashMapBenchmark {
 
     @Setup
     public void init() {
-        map = selectCache(mapClass);
+        if (tableFillPercent < 0 || tableFillPercent >= 100) {
+            throw new IllegalArgumentException("tableFillPercent must be between 0 and 99");
+        }
+        if (tableFillPercent > 0) {
+            maxActiveKeys = (int) ((long) FIXED_TABLE_SIZE * tableFillPercent / 100) - maxInactiveKeys - 1;
+        }
+
+        map = (tableFillPercent > 0) ? selectFixedSizeCache(mapClass) : selectCache(mapClass);
+        if (!evictionPolicy.equals("fifo")) {
+            map.setEvictionPolicy(selectEvictionPolicy(evictionPolicy));
+        }
+        initReaccessPattern();
         keyNamingStrategy = KeyNamingStrategy.select(keyNaming);
 
         initUniverse();
         prepopulateMap();
     }
 
+    @TearDown
+    public void close() throws Exception {
+        if (map instanceof AutoCloseable closeable) {
+            closeable.close(); // off-heap maps release native memory
+        }
+    }
+
     private void initUniverse() {
         universe = new DataPayload[KEY_UNIVERSE_SIZE];
 
@@ -70,6 +114,16 @@ public class HashMapBenchmark {
         }
     }
 
+    private void initReaccessPattern() {
+        final int hotKeys = REACCESS_SPAN_FACTOR * maxInactiveKeys / HOT_KEY_STRIDE;
+        Random random = new Random(42);
+        reaccessAges = new int[REACCESS_PATTERN_SIZE];
+        for (int i = 0; i < REACCESS_PATTERN_SIZE; i++) {
+            double r = random.nextDouble();
+            reaccessAges[i] = 1 + (int) (r * r * hotKeys);
+        }
+    }
+
     private void prepopulateMap() {
         for (int i = 0; i < maxActiveKeys; i++) {
             int nextActive = (int) (nextKeyId & KEY_UNIVERSE_MASK);
@@ -124,7 +178,42 @@ public class HashMapBenchmark {
         nextKeyId++;
     }
 
+    /** Deactivate-heavy cycle: every deactivation evicts the oldest inactive entry, no lookups */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void churn() {
+        removeOldest(); // REMOVE
+        addNewest();    // PUT
+        nextKeyId++;
+    }
 
+    /**
+     * Skewed re-access workload: besides the put newest / deactivate oldest cycle, one of the hot inactive keys
+     * (every {@link #HOT_KEY_STRIDE}-th key) is looked up again, the recently deactivated ones more often.
+     * Hot keys stay in demand longer than FIFO keeps them, so the hit rate (hits / (hits + misses)) depends on the policy.
+     */
+    @Benchmark
+    @OperationsPerInvocation(3)
+    public void skewedReaccess(ReaccessCounters counters) {
+        final long newestInactive = nextKeyId - maxActiveKeys - 1;
+        final long hotKeyId = ((newestInactive / HOT_KEY_STRIDE) - reaccessAges[(int) (nextKeyId & (REACCESS_PATTERN_SIZE - 1))]) * HOT_KEY_STRIDE;
+        if (map.get(universe[(int) (hotKeyId & KEY_UNIVERSE_MASK)].getKey()) != null) {
+            counters.hits++;
+        } else {
+            counters.misses++;
+        }
+
+        removeOldest(); // REMOVE
+        addNewest();    // PUT
+        nextKeyId++;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ReaccessCounters {
+        public long hits;
+        public long misses;
+    }
 
     private Cache selectCache(String cacheClass) {
         final int cacheCapacity = 2*maxActiveKeys;
@@ -136,11 +225,49 @@ public class HashMapBenchmark {
             case "robinhood" -> new RobinHoodHashMap(cacheCapacity, maxInactiveKeys, hash);
             case "nativeLinearprobe" -> new NativeLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash);
             case "rawLinearprobe" -> new RawLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "linearprobeCachedHash" -> new LinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash,
+                    LinearProbingHashMap.DEFAULT_LOAD_FACTOR, false, true);
+            case "nativeLinearprobeCachedHash" -> new NativeLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash,
+                    NativeLinearProbingHashMap.DEFAULT_LOAD_FACTOR, false, true);
+            case "rawLinearprobeCachedHash" -> new RawLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash,
+                    RawLinearProbingHashMap.DEFAULT_LOAD_FACTOR, RawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH, false, true);
+            case "offHeapRawLinearprobe" -> new OffHeapRawLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "arenaRawLinearprobe" -> new ArenaRawLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "decimalLinearprobe" -> new DecimalKeyCache(cacheCapacity, maxInactiveKeys, hash); // long keys for "number" naming only
+            case "inlineKeyLinearprobe" -> new InlineKeyLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "swissTable" -> new SwissTableHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "cuckoo" -> new CuckooHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "hopscotch" -> new HopscotchHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "stableSlot" -> new StableSlotHashMap(cacheCapacity, maxInactiveKeys, hash);
             case "javaUtil" -> new JavaHashMap(cacheCapacity, maxInactiveKeys);
             default -> throw new IllegalArgumentException(cacheClass);
         };
     }
 
+    // table of FIXED_TABLE_SIZE slots, which is not resized below NO_RESIZE_LOAD_FACTOR
+    private Cache selectFixedSizeCache(String cacheClass) {
+        final int cacheCapacity = FIXED_TABLE_SIZE / 2; // maps allocate twice the active data count
+        final HashCodeComputer hash = selectAsciiHashCodeComputer(hashStrategy);
+
+        return switch (cacheClass) {
+            case "linearprobe" -> new LinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash, NO_RESIZE_LOAD_FACTOR);
+            case "robinhood" -> new RobinHoodHashMap(cacheCapacity, maxInactiveKeys, hash, NO_RESIZE_LOAD_FACTOR);
+            case "swissTable" -> new SwissTableHashMap(cacheCapacity, maxInactiveKeys, hash, (int) (NO_RESIZE_LOAD_FACTOR * 100));
+            case "cuckoo" -> new CuckooHashMap(cacheCapacity, maxInactiveKeys, hash, NO_RESIZE_LOAD_FACTOR);
+            case "hopscotch" -> new HopscotchHashMap(cacheCapacity, maxInactiveKeys, hash, NO_RESIZE_LOAD_FACTOR);
+            default -> throw new IllegalArgumentException(cacheClass + " does not take a load factor");
+        };
+    }
+
+    static EvictionPolicy.Factory selectEvictionPolicy(String policyName) {
+        return switch (policyName) {
+            case "fifo" -> FifoEvictionPolicy::new;
+            case "lru" -> LruEvictionPolicy::new;
+            case "tinyLfu" -> TinyLfuEvictionPolicy::new;
+            default -> throw new IllegalArgumentException(policyName);
+        };
+    }
+
     static HashCodeComputer selectAsciiHashCodeComputer(String hashingStrategyName) {
         return switch (hashingStrategyName) {
             case "xxHash" -> XxHashCodeComputer.INSTANCE;
@@ -152,6 +279,7 @@ public class HashMapBenchmark {
             case "unrolledDefault" -> UnrolledDefaultHashCodeComputer.INSTANCE;
             case "nativeHash" -> NativeHashCodeComputer.INSTANCE;
             case "vectorizedDefaultHash" -> VectorizedDefaultHashCodeComputer.INSTANCE;
+            case "vectorizedNativeHash" -> VectorizedNativeHashCodeComputer.INSTANCE;
             default -> throw new IllegalArgumentException(hashingStrategyName);
         };
     }
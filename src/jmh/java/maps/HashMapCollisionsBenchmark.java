@@ -1,6 +1,8 @@
 package maps;
 
 import hashing.HashCodeComputer;
+import hashing.HashDistribution;
+import hashing.PrefixSkippingHashCodeComputer;
 import internal.AsciiString;
 
 import java.util.Arrays;
@@ -11,10 +13,13 @@ import static maps.HashMapBenchmark.selectAsciiHashCodeComputer;
 /** not really a JMH test :-) (extracted from main JMH test) */
 public class HashMapCollisionsBenchmark {
     private static final long BASE_KEY_ID = 1_000_000_000_000L;
+    private static final String HASH64_SUFFIX = "/hash64"; // bucket from the high bits of HashCodeComputer#hash64
+    private static final String PREFIX_SKIPPING = "prefixSkipping"; // prefix learned from the first keys of each key kind
+    private static final int PREFIX_SAMPLE_SIZE = 4096;
 
     private static final String[] KEY_STRATEGIES = {
             "number",
-            "mm",
+            "fixed_prefix",
             "uuid"
     };
 
@@ -25,14 +30,19 @@ public class HashMapCollisionsBenchmark {
             "metroHash",
             "unrolledDefault",
             "vectorizedDefaultHash",
+            "vectorizedNativeHash",
             "nativeHash",
             "faster",
-            "vhFaster"
+            "vhFaster",
+            PREFIX_SKIPPING,
+            "xxHash" + HASH64_SUFFIX,
+            "metroHash" + HASH64_SUFFIX,
+            "nativeHash" + HASH64_SUFFIX
     };
 
     public static void main(String[] args) {
         // Collect results: collisions[row(hash)][col(keyNaming)]
-        final BasicMetrics[][] metricsMatrix = new BasicMetrics[HASH_STRATEGIES.length][KEY_STRATEGIES.length];
+        final HashDistribution[][] metricsMatrix = new HashDistribution[HASH_STRATEGIES.length][KEY_STRATEGIES.length];
 
         // Simulation constants
         final int maxActiveKeys = 1 << 20;  // 1,048,576
@@ -46,12 +56,13 @@ public class HashMapCollisionsBenchmark {
             }
         }
 
-        printMetric(metricsMatrix, "Empty Bucket Ratio (smaller is better)", m->String.format("%.6f", m.emptyRate));
-        printMetric(metricsMatrix, "Index of dispersion (≈1 =good, »1 =clustering, «1 = suspicious)", m->String.format("%.6f", m.iod));
-        printMetric(metricsMatrix, "Percentiles {P50,P90,P99,P999}", m->String.format("{%d, %d, %d, %d}", m.p50, m.p90, m.p99, m.p999));
+        printMetric(metricsMatrix, "Collisions (smaller is better)", m->String.valueOf(m.collisions()));
+        printMetric(metricsMatrix, "Empty Bucket Ratio (smaller is better)", m->String.format("%.6f", m.emptyRate()));
+        printMetric(metricsMatrix, "Index of dispersion (≈1 =good, »1 =clustering, «1 = suspicious)", m->String.format("%.6f", m.iod()));
+        printMetric(metricsMatrix, "Percentiles {P50,P90,P99,P999}", m->String.format("{%d, %d, %d, %d}", m.p50(), m.p90(), m.p99(), m.p999()));
     }
 
-    private static void printMetric(BasicMetrics[][] metricsMatrix, String metricName, Function<BasicMetrics,String> metricExtractor) {
+    private static void printMetric(HashDistribution[][] metricsMatrix, String metricName, Function<HashDistribution,String> metricExtractor) {
         // -------- Formatting & printing --------
         // First column width (hash names)
         int firstColWidth = Math.max("Hash".length(),
@@ -62,7 +73,7 @@ public class HashMapCollisionsBenchmark {
         for (int c = 0; c < KEY_STRATEGIES.length; c++) {
             int maxDigits = KEY_STRATEGIES[c].length();
             for (int r = 0; r < HASH_STRATEGIES.length; r++) {
-                BasicMetrics metrics = metricsMatrix[r][c];
+                HashDistribution metrics = metricsMatrix[r][c];
                 String metricText = metricExtractor.apply(metrics);
                 int len = metricText.length();
                 if (len > maxDigits) maxDigits = len;
@@ -90,7 +101,7 @@ public class HashMapCollisionsBenchmark {
         for (int r = 0; r < HASH_STRATEGIES.length; r++) {
             sb.append(padRight(HASH_STRATEGIES[r], firstColWidth));
             for (int c = 0; c < KEY_STRATEGIES.length; c++) {
-                BasicMetrics metrics = metricsMatrix[r][c];
+                HashDistribution metrics = metricsMatrix[r][c];
                 String metricText = metricExtractor.apply(metrics);
                 sb.append("  ").append(padLeft(metricText, colWidths[c]));
             }
@@ -100,48 +111,33 @@ public class HashMapCollisionsBenchmark {
         System.out.print(sb);
     }
 
-    public record BasicMetrics(float lambda, float iod, float emptyRate, int p50, int p90, int p99, int p999) {}
-
-    private static BasicMetrics runOnce(String hashStrategy, String keyNaming, int maxActiveKeys) {
+    private static HashDistribution runOnce(String hashStrategy, String keyNaming, int maxActiveKeys) {
         final KeyNamingStrategy keyNamingStrategy = KeyNamingStrategy.select(keyNaming);
 
         final int m = 2 * maxActiveKeys; // total number of hash buckets (0.5 load factor)
         final int [] counts = new int[m];
-        final HashCodeComputer hashComputer = selectAsciiHashCodeComputer(hashStrategy);
+        final boolean hash64 = hashStrategy.endsWith(HASH64_SUFFIX);
+        final HashCodeComputer hashComputer = hashStrategy.equals(PREFIX_SKIPPING) ? learnPrefix(keyNaming)
+                : selectAsciiHashCodeComputer(hash64 ? hashStrategy.substring(0, hashStrategy.length() - HASH64_SUFFIX.length()) : hashStrategy);
 
         final int n = 10 * m; // total number of inserted keys
         for (int i = 0; i < n; i++) {
             AsciiString key = keyNamingStrategy.formatKey(i + BASE_KEY_ID);
-            counts[hashComputer.modPowerOfTwoHashCode(key, m)]++;
+            counts[hash64 ? HashCodeComputer.highBitsIndex(hashComputer.hash64(key), m) : hashComputer.modPowerOfTwoHashCode(key, m)]++;
         }
 
-        return analyzeResults(n, m, counts);
+        return HashDistribution.analyze(n, m, counts);
     }
 
-    private static BasicMetrics analyzeResults(int n, int m, int[] counts) {
-        int lambda = n / m;
-        float variance = 0;
-        int emptyBucketCount = 0;
-        for (int v : counts) {
-            if (v == 0)
-                emptyBucketCount++;
-
-            float delta = (v - lambda);
-            variance += delta * delta;
+    private static PrefixSkippingHashCodeComputer learnPrefix(String keyNaming) {
+        final KeyNamingStrategy keyNamingStrategy = KeyNamingStrategy.select(keyNaming); // the same keys runOnce starts with
+        final AsciiString[] sample = new AsciiString[PREFIX_SAMPLE_SIZE];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = keyNamingStrategy.formatKey(i + BASE_KEY_ID);
         }
-        variance /= m;
-
-        float iod = variance / lambda;
-        float emptyRate = ((float)emptyBucketCount) / m;
-
-        int[] sorted = counts.clone();
-        Arrays.sort(sorted);
-        int p50 = sorted[(int)(0.50 * (sorted.length - 1))];
-        int p90 = sorted[(int)(0.90 * (sorted.length - 1))];
-        int p99 = sorted[(int)(0.99 * (sorted.length - 1))];
-        int p999 = sorted[(int)(0.999 * (sorted.length - 1))];
-
-        return new BasicMetrics(lambda, iod, emptyRate, p50, p90, p99, p999);
+        PrefixSkippingHashCodeComputer learned = PrefixSkippingHashCodeComputer.learn(sample, sample.length);
+        System.out.println("Learned prefix \"" + learned.getPrefix() + "\"");
+        return learned;
     }
 
     // ----- tiny helpers -----
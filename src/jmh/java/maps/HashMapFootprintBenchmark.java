@@ -0,0 +1,106 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.DataPayload;
+
+import java.util.Arrays;
+
+import static maps.HashMapBenchmark.selectAsciiHashCodeComputer;
+
+/**
+ * not really a JMH test either: reports bytes spent on key storage per entry of raw maps,
+ * filled the same way as {@link HashMapBenchmark} prepopulates them
+ */
+public class HashMapFootprintBenchmark {
+    private static final long BASE_KEY_ID = 1_000_000_000_000L;
+
+    private static final String[] KEY_STRATEGIES = {
+            "number",
+            "fixed_prefix",
+            "uuid"
+    };
+
+    private static final String[] MAP_CLASSES = {
+            "rawLinearprobe",
+            "offHeapRawLinearprobe",
+            "arenaRawLinearprobe"
+    };
+
+    public static void main(String[] args) {
+        final int maxActiveKeys = 1 << 20;
+        final int maxInactiveKeys = 4096;
+        final HashCodeComputer hash = selectAsciiHashCodeComputer("xxHash");
+
+        final int firstColWidth = Arrays.stream(MAP_CLASSES).mapToInt(String::length).max().orElse(0);
+        StringBuilder sb = new StringBuilder();
+        sb.append("\nRESULTS: key storage bytes per entry (smaller is better)\n");
+        sb.append(padRight("Map", firstColWidth));
+        for (String keyNaming : KEY_STRATEGIES) {
+            sb.append("  ").append(padLeft(keyNaming, 12));
+        }
+        sb.append('\n');
+
+        for (String mapClass : MAP_CLASSES) {
+            sb.append(padRight(mapClass, firstColWidth));
+            for (String keyNaming : KEY_STRATEGIES) {
+                System.out.println("Testing \"" + mapClass + "\" with \"" + keyNaming + "\" key kind...");
+                double bytesPerEntry = runOnce(mapClass, keyNaming, hash, maxActiveKeys, maxInactiveKeys);
+                sb.append("  ").append(padLeft(String.format("%.1f", bytesPerEntry), 12));
+            }
+            sb.append('\n');
+        }
+
+        System.out.print(sb);
+    }
+
+    private static double runOnce(String mapClass, String keyNaming, HashCodeComputer hash, int maxActiveKeys, int maxInactiveKeys) {
+        final KeyNamingStrategy keyNamingStrategy = KeyNamingStrategy.select(keyNaming);
+        final int cacheCapacity = 2 * maxActiveKeys;
+
+        Cache map = switch (mapClass) {
+            case "rawLinearprobe" -> new RawLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "offHeapRawLinearprobe" -> new OffHeapRawLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash);
+            case "arenaRawLinearprobe" -> new ArenaRawLinearProbingHashMap(cacheCapacity, maxInactiveKeys, hash);
+            default -> throw new IllegalArgumentException(mapClass);
+        };
+
+        // active keys followed by inactive ones, evicting the oldest inactive once the queue is full
+        long nextKeyId = 0;
+        DataPayload[] window = new DataPayload[maxActiveKeys + maxInactiveKeys + 1];
+        for (int i = 0; i < maxActiveKeys + 2 * maxInactiveKeys; i++) {
+            DataPayload entry = new DataPayload(keyNamingStrategy.formatKey(nextKeyId + BASE_KEY_ID));
+            map.putIfEmpty(entry);
+            window[(int) (nextKeyId % window.length)] = entry;
+            if (nextKeyId >= maxActiveKeys) {
+                map.deactivate(window[(int) ((nextKeyId - maxActiveKeys) % window.length)]);
+            }
+            nextKeyId++;
+        }
+
+        long keyStorageBytes;
+        if (map instanceof RawLinearProbingHashMap raw) {
+            keyStorageBytes = raw.keyStorageBytes();
+        } else if (map instanceof OffHeapRawLinearProbingHashMap offHeap) {
+            keyStorageBytes = offHeap.keyStorageBytes();
+            offHeap.close();
+        } else {
+            keyStorageBytes = ((ArenaRawLinearProbingHashMap) map).keyStorageBytes();
+        }
+        return ((double) keyStorageBytes) / map.size();
+    }
+
+    // ----- tiny helpers -----
+    private static String padRight(String s, int width) {
+        if (s.length() >= width) return s;
+        char[] pad = new char[width - s.length()];
+        Arrays.fill(pad, ' ');
+        return s + new String(pad);
+    }
+
+    private static String padLeft(String s, int width) {
+        if (s.length() >= width) return s;
+        char[] pad = new char[width - s.length()];
+        Arrays.fill(pad, ' ');
+        return new String(pad) + s;
+    }
+}
@@ -0,0 +1,115 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.DataPayload;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static maps.HashMapBenchmark.selectAsciiHashCodeComputer;
+
+/**
+ * Latency of putIfEmpty across a resize boundary: stop-the-world vs incremental resize.
+ * <p>
+ * Every measurement iteration starts with a fresh map filled exactly up to its resize threshold,
+ * so the first put of the iteration grows the table. The workload then continues with the usual
+ * put newest / deactivate oldest cycle while (in incremental mode) the old table is being migrated.
+ * Look at p0.9999 and p1.0 of the sample histogram.
+ */
+@Fork(value=3, jvmArgs = { "-Xms4G", "-Xmx4G", "-XX:+AlwaysPreTouch" })
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 50, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.SampleTime)
+@State(Scope.Thread)
+@Threads(1)
+public class HashMapResizeBenchmark {
+    private static final long BASE_KEY_ID = 1_000_000_000_000L;
+
+    private static final int KEY_UNIVERSE_SIZE = 2097152;
+    private static final int KEY_UNIVERSE_MASK = (KEY_UNIVERSE_SIZE - 1);
+
+    private static final int MAX_INACTIVE_KEYS = 4096;
+
+    // map is created for this many entries, which is exactly its resize threshold with default load factor
+    @Param({"1048576"})
+    private int maxActiveKeys = 1048576;
+
+    @Param({"xxHash"})
+    private String hashStrategy = "xxHash";
+
+    @Param({"linearprobe", "nativeLinearprobe", "rawLinearprobe"})
+    private String mapClass = "linearprobe";
+
+    @Param({"false", "true"})
+    private boolean incrementalResize;
+
+    @Param({"number", "fixed_prefix", "uuid"})
+    private String keyNaming = "number";
+
+    private Cache map;
+    private long nextKeyId;
+    private DataPayload[] universe;
+
+    @Setup(Level.Trial)
+    public void initUniverse() {
+        KeyNamingStrategy keyNamingStrategy = KeyNamingStrategy.select(keyNaming);
+        universe = new DataPayload[KEY_UNIVERSE_SIZE];
+
+        for (int i = 0; i < KEY_UNIVERSE_SIZE; i++) {
+            universe[i] = new DataPayload(keyNamingStrategy.formatKey(i + BASE_KEY_ID));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fillUpToThreshold() {
+        map = selectCache(mapClass);
+        nextKeyId = 0;
+
+        for (int i = 0; i < maxActiveKeys; i++) {
+            if (!map.putIfEmpty(universe[(int) (nextKeyId & KEY_UNIVERSE_MASK)]))
+                throw new IllegalStateException("Duplicate");
+            nextKeyId++;
+        }
+        if (map.capacity() != 2 * maxActiveKeys)
+            throw new IllegalStateException("Map resized too early: " + map.capacity());
+    }
+
+    @Benchmark
+    public boolean putIfEmpty() {
+        final int nextActive = (int) (nextKeyId & KEY_UNIVERSE_MASK);
+        boolean isNew = map.putIfEmpty(universe[nextActive]);
+
+        final int oldestActive = (int) ((nextKeyId - maxActiveKeys) & KEY_UNIVERSE_MASK);
+        map.deactivate(universe[oldestActive]);
+
+        nextKeyId++;
+        return isNew;
+    }
+
+    private Cache selectCache(String cacheClass) {
+        final HashCodeComputer hash = selectAsciiHashCodeComputer(hashStrategy);
+
+        return switch (cacheClass) {
+            case "linearprobe" -> new LinearProbingHashMap(maxActiveKeys, MAX_INACTIVE_KEYS, hash,
+                    LinearProbingHashMap.DEFAULT_LOAD_FACTOR, incrementalResize);
+            case "nativeLinearprobe" -> new NativeLinearProbingHashMap(maxActiveKeys, MAX_INACTIVE_KEYS, hash,
+                    NativeLinearProbingHashMap.DEFAULT_LOAD_FACTOR, incrementalResize);
+            case "rawLinearprobe" -> new RawLinearProbingHashMap(maxActiveKeys, MAX_INACTIVE_KEYS, hash,
+                    RawLinearProbingHashMap.DEFAULT_LOAD_FACTOR, RawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH, incrementalResize);
+            default -> throw new IllegalArgumentException(cacheClass);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(HashMapResizeBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
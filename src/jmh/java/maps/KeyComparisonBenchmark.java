@@ -0,0 +1,65 @@
+package maps;
+
+import internal.KeyComparison;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * Scalar against vector key equality by key length: {@link KeyComparison#VECTOR_THRESHOLD} is the first length
+ * where vectorEquals wins. Equal keys, so every byte is compared, like the key check of a lookup hit.
+ * Keys shorter than one 16 byte vector are always compared by the scalar steps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 3)
+public class KeyComparisonBenchmark {
+
+    @Param({"16", "18", "20", "22", "24", "28", "32", "36", "48", "64"})
+    private int keyLength;
+
+    private byte[] lhs;
+    private byte[] rhs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        lhs = new byte[keyLength];
+        for (int i = 0; i < keyLength; i++) {
+            lhs[i] = (byte) ('a' + (i % 26));
+        }
+        rhs = lhs.clone();
+    }
+
+    @Benchmark
+    public boolean scalarEquals() {
+        return KeyComparison.scalarEquals(lhs, ARRAY_BYTE_BASE_OFFSET, rhs, ARRAY_BYTE_BASE_OFFSET, keyLength);
+    }
+
+    @Benchmark
+    public boolean vectorEquals() {
+        return KeyComparison.vectorEquals(lhs, 0, rhs, 0, keyLength);
+    }
+
+    /** What the caches call: one of the two by {@link KeyComparison#VECTOR_THRESHOLD} */
+    @Benchmark
+    public boolean dispatchedEquals() {
+        return KeyComparison.equals(lhs, ARRAY_BYTE_BASE_OFFSET, rhs, ARRAY_BYTE_BASE_OFFSET, keyLength);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(KeyComparisonBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,110 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.DataPayload;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static maps.HashMapBenchmark.selectAsciiHashCodeComputer;
+
+/**
+ * One writer thread runs the HashMapBenchmark cycle (deactivate oldest / put newest) while reader threads
+ * look up random keys of the current active window.
+ * <p>
+ * Scale readers with {@code -tg 1,N}; {@code -tg 1,0} gives the writer latency without readers.
+ */
+@Fork(value=3, jvmArgs = { "-Xms4G", "-Xmx4G", "-XX:+AlwaysPreTouch" })
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 15)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Group)
+public class SingleWriterHashMapBenchmark {
+    private static final long BASE_KEY_ID = 1_000_000_000_000L;
+
+    private static final int KEY_UNIVERSE_SIZE = 2097152;
+    private static final int KEY_UNIVERSE_MASK = (KEY_UNIVERSE_SIZE - 1);
+
+    private static final int MAX_ACTIVE_KEYS = 1048576;
+
+    @Param({"4096"})
+    private int maxInactiveKeys = 4096;
+
+    @Param({"xxHash"})
+    private String hashStrategy = "xxHash";
+
+    @Param({"seqLock", "striped", "concurrentJavaUtil"})
+    private String mapClass = "seqLock";
+
+    @Param({"number", "fixed_prefix", "uuid"})
+    private String keyNaming = "number";
+
+    private Cache map;
+    private DataPayload[] universe;
+    private long nextKeyId;                                  // writer only
+    private final AtomicLong publishedKeyId = new AtomicLong(); // writer progress seen by readers
+
+    @Setup
+    public void init() {
+        map = selectCache(mapClass);
+
+        KeyNamingStrategy keyNamingStrategy = KeyNamingStrategy.select(keyNaming);
+        universe = new DataPayload[KEY_UNIVERSE_SIZE];
+        for (int i = 0; i < KEY_UNIVERSE_SIZE; i++) {
+            universe[i] = new DataPayload(keyNamingStrategy.formatKey(i + BASE_KEY_ID));
+        }
+
+        for (int i = 0; i < MAX_ACTIVE_KEYS; i++) {
+            if (!map.putIfEmpty(universe[(int) (nextKeyId & KEY_UNIVERSE_MASK)]))
+                throw new IllegalStateException("Duplicate");
+            nextKeyId++;
+        }
+        publishedKeyId.set(nextKeyId);
+    }
+
+    private Cache selectCache(String cacheClass) {
+        final HashCodeComputer hash = selectAsciiHashCodeComputer(hashStrategy);
+
+        return switch (cacheClass) {
+            case "seqLock" -> new SeqLockLinearProbingHashMap(2 * MAX_ACTIVE_KEYS, maxInactiveKeys, hash);
+            case "striped" -> new StripedHashMap(2 * MAX_ACTIVE_KEYS, maxInactiveKeys, hash);
+            case "concurrentJavaUtil" -> new ConcurrentJavaHashMap(2 * MAX_ACTIVE_KEYS, maxInactiveKeys);
+            default -> throw new IllegalArgumentException(cacheClass);
+        };
+    }
+
+    @Benchmark
+    @Group("singleWriter")
+    @GroupThreads(1)
+    @OperationsPerInvocation(2)
+    public boolean writer() {
+        map.deactivate(universe[(int) ((nextKeyId - MAX_ACTIVE_KEYS) & KEY_UNIVERSE_MASK)]);
+        boolean isNew = map.putIfEmpty(universe[(int) (nextKeyId & KEY_UNIVERSE_MASK)]);
+        nextKeyId++;
+        publishedKeyId.lazySet(nextKeyId);
+        return isNew;
+    }
+
+    @Benchmark
+    @Group("singleWriter")
+    @GroupThreads(3)
+    public DataPayload reader() {
+        long activeKeyId = publishedKeyId.getOpaque() - 1 - ThreadLocalRandom.current().nextInt(MAX_ACTIVE_KEYS);
+        return map.get(universe[(int) (activeKeyId & KEY_UNIVERSE_MASK)].getKey());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SingleWriterHashMapBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -17,8 +17,8 @@ public class DefaultHashCodeComputer extends HashCodeComputer {
         return hash;
     }
 
-//    @Override
-//    protected int hashCode(long key) {
-//        return (int) (key ^ (key >>> 32));
-//    }
+    @Override
+    public int hashCode(long key) {
+        return mix64(key);
+    }
 }
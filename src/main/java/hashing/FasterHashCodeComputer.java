@@ -25,9 +25,9 @@ public class FasterHashCodeComputer extends HashCodeComputer {
         }
         return hash;
     }
-//
-//    @Override
-//    protected int hashCode(long key) {
-//        return (int) (key ^ (key >>> 32));
-//    }
+
+    @Override
+    public int hashCode(long key) {
+        return mix64(key);
+    }
 }
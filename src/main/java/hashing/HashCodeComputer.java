@@ -3,24 +3,87 @@ package hashing;
 import internal.AsciiString;
 import sun.misc.Unsafe;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static internal.UnsafeAccess.UNSAFE;
 
 public abstract class HashCodeComputer {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final int id = NEXT_ID.incrementAndGet(); // tags hash codes cached in keys, see AsciiString#getCachedHash
+
     public int modPowerOfTwoHashCode(AsciiString key, int mod) {
         return modPowerOfTwoHashCode(hashCode(key), mod);
     }
 
+    /**
+     * @return computer whose hash codes also depend on the seed, so keys colliding under one seed (by accident
+     *         or by design) spread under another. Seeded xxHash by default: a seed in the polynomial hashes would
+     *         still leave equal-length keys with equal hash codes colliding.
+     */
+    public HashCodeComputer withSeed(long seed) {
+        return XxHashCodeComputer.INSTANCE.withSeed(seed);
+    }
+
+    /** Keys remember the hash code of the last computer that hashed them, so repeated lookups of a key hash it once. */
     public int hashCode(AsciiString key) {
+        final long cached = key.getCachedHash();
+        if (isOwnCachedHash(cached)) {
+            return (int) cached;
+        }
+
+        final int hash = computeHashCode(key);
+        cacheHashCode(key, hash);
+        return hash;
+    }
+
+    /** @return whether the {@link AsciiString#getCachedHash} word holds a hash code of this computer */
+    protected final boolean isOwnCachedHash(long cached) {
+        return (int) (cached >>> 32) == id;
+    }
+
+    protected final void cacheHashCode(AsciiString key, int hash) {
+        key.setCachedHash(id, hash);
+    }
+
+    /**
+     * Hashes keys[0..n) into out[0..n), with the same hash codes as {@link #hashCode(AsciiString)} one key at a time.
+     * Computers that can hash many keys at once override it.
+     */
+    public void hashAll(AsciiString[] keys, int n, int[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = hashCode(keys[i]);
+        }
+    }
+
+    /** @return hash code of the key bytes, ignoring and keeping the cached one */
+    public int computeHashCode(AsciiString key) {
         return hashCode(key.getArray(), UNSAFE, key.getAddress(), 0, key.getLength());
     }
 
     protected abstract int hashCode(byte[] array, Unsafe unsafeAccess, long address, int offset, int length);
 
-//    protected abstract int hashCode(long key);
+    /**
+     * 64-bit hash code for tables that take the index from the high bits and a tag from the low ones,
+     * see {@link #highBitsIndex}. Not cached in the key: by default it mixes the (cached) 32-bit hash code,
+     * which spreads it over all 64 bits without adding entropy; 64-bit computers override it.
+     */
+    public long hash64(AsciiString key) {
+        return mix64Bits(hashCode(key) & 0xFFFFFFFFL);
+    }
+
+    /** @return index in [0; mod) from the highest bits of a 64-bit hash code */
+    public static int highBitsIndex(long hash64, int mod) {
+        assert Integer.bitCount(mod) == 1;
 
-//    public int modPowerOfTwoHashCode(long key, int mod) {
-//        return computeModPowerOfTwoHashCode(hashCode(key), mod);
-//    }
+        return (int) ((hash64 >>> 1) >>> (63 - Integer.numberOfTrailingZeros(mod))); // two shifts, so mod 1 shifts by 64
+    }
+
+    public abstract int hashCode(long key);
+
+    public int modPowerOfTwoHashCode(long key, int mod) {
+        return computeModPowerOfTwoHashCode(hashCode(key), mod);
+    }
 
     public int modPowerOfTwoHashCode(int key, int mod) {
         return computeModPowerOfTwoHashCode(key, mod);
@@ -29,12 +92,20 @@ public abstract class HashCodeComputer {
     public static int computeModPowerOfTwoHashCode(int key, int mod) {
         assert Integer.bitCount(mod) == 1;
 
-        if (key == Integer.MIN_VALUE)
-            return (1);
+        return (key & (mod - 1)); // the low bits of negative codes are as good as of positive ones, no folding
+    }
 
-        if (key < 0)
-            key = -key;
+    /** 64-bit finalizer of MurmurHash3: every input bit affects every output bit, so sequential numbers spread well */
+    protected static int mix64(long key) {
+        return (int) mix64Bits(key);
+    }
 
-        return (key & (mod - 1));
+    protected static long mix64Bits(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
     }
 }
@@ -0,0 +1,120 @@
+package hashing;
+
+import internal.AsciiString;
+
+import java.util.Arrays;
+
+/**
+ * Picks a hash code computer for sampled keys: the fastest one among the candidates which spread the keys well.
+ * <p>
+ * Spread is checked like {@code HashMapCollisionsBenchmark} does it, on {@link #BUCKET_LOAD} keys per bucket:
+ * no clustering (index of dispersion), few empty buckets and no overfull ones (p99.9 load). Speed is the best of
+ * {@link #TIMING_ROUNDS} rounds of hashing all sampled keys. When no candidate spreads the keys well,
+ * the one with the lowest index of dispersion wins.
+ * <p>
+ * Selection stops at the time budget: candidates not checked by then are skipped, so list them best guess first,
+ * and timing stops after the round in progress.
+ */
+public class HashCodeComputerSelector {
+    public static final int BUCKET_LOAD = 8;
+    public static final float MAX_DISPERSION = 1.5f;
+    public static final int TIMING_ROUNDS = 10;
+
+    protected final HashCodeComputer[] candidates;
+    protected final long budgetNanos;
+
+    private int sink; // keeps the timed hashing from being optimized away
+
+    public HashCodeComputerSelector(HashCodeComputer[] candidates, long budgetNanos) {
+        if (candidates.length == 0) {
+            throw new IllegalArgumentException("candidates must not be empty");
+        }
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("budgetNanos must be positive");
+        }
+        this.candidates = candidates.clone();
+        this.budgetNanos = budgetNanos;
+    }
+
+    /** @return the first candidate when there are too few keys to tell the candidates apart */
+    public HashCodeComputer select(AsciiString[] keys, int n) {
+        if (n < 2 * BUCKET_LOAD) {
+            return candidates[0];
+        }
+
+        final long deadline = System.nanoTime() + budgetNanos;
+        final int buckets = Integer.highestOneBit(n / BUCKET_LOAD);
+        final int[] counts = new int[buckets];
+
+        HashCodeComputer[] wellSpread = new HashCodeComputer[candidates.length];
+        int wellSpreadCount = 0;
+        HashCodeComputer leastDispersed = candidates[0];
+        float leastDispersion = Float.MAX_VALUE;
+
+        for (HashCodeComputer candidate : candidates) {
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
+
+            HashDistribution distribution = distribution(candidate, keys, n, counts);
+            if (distribution.iod() < leastDispersion) {
+                leastDispersion = distribution.iod();
+                leastDispersed = candidate;
+            }
+            if (isWellSpread(distribution)) {
+                wellSpread[wellSpreadCount++] = candidate;
+            }
+        }
+        if (wellSpreadCount <= 1) {
+            return wellSpreadCount == 1 ? wellSpread[0] : leastDispersed;
+        }
+
+        // rounds take turns between the candidates, so JIT warm-up during the selection favours none of them
+        final long[] bestNanos = new long[wellSpreadCount];
+        Arrays.fill(bestNanos, Long.MAX_VALUE);
+        for (int round = 0; round < TIMING_ROUNDS; round++) {
+            for (int c = 0; c < wellSpreadCount; c++) {
+                bestNanos[c] = Math.min(bestNanos[c], time(wellSpread[c], keys, n));
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+
+        int fastest = 0;
+        for (int c = 1; c < wellSpreadCount; c++) {
+            if (bestNanos[c] < bestNanos[fastest]) {
+                fastest = c;
+            }
+        }
+        return wellSpread[fastest];
+    }
+
+    protected HashDistribution distribution(HashCodeComputer computer, AsciiString[] keys, int n, int[] counts) {
+        final int buckets = counts.length;
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < n; i++) {
+            counts[computer.modPowerOfTwoHashCode(computer.computeHashCode(keys[i]), buckets)]++;
+        }
+        return HashDistribution.analyze(n, buckets, counts);
+    }
+
+    /** Poisson bucket loads give an index of dispersion of 1, e^-lambda empty buckets and p99.9 well below 3 * lambda */
+    protected static boolean isWellSpread(HashDistribution distribution) {
+        final float lambda = distribution.lambda();
+        return distribution.iod() <= MAX_DISPERSION
+                && distribution.emptyRate() <= 2 * Math.exp(-lambda) + 0.01f
+                && distribution.p999() <= 3 * lambda;
+    }
+
+    private long time(HashCodeComputer computer, AsciiString[] keys, int n) {
+        int hash = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            hash += computer.computeHashCode(keys[i]);
+        }
+        final long nanos = System.nanoTime() - start;
+        sink += hash;
+        return nanos;
+    }
+}
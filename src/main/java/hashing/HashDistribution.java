@@ -0,0 +1,41 @@
+package hashing;
+
+import java.util.Arrays;
+
+/**
+ * How evenly n keys fall into m buckets.
+ * @param lambda mean bucket load
+ * @param iod index of dispersion: ≈1 is good, »1 is clustering, «1 is suspicious (too regular keys)
+ * @param emptyRate share of buckets with no key at all
+ * @param collisions keys which fall into a bucket taken by an earlier key
+ */
+public record HashDistribution(float lambda, float iod, float emptyRate, int collisions, int p50, int p90, int p99, int p999) {
+
+    /** @param counts number of keys of every one of m buckets, n keys in total */
+    public static HashDistribution analyze(int n, int m, int[] counts) {
+        float lambda = (float) n / m;
+        float variance = 0;
+        int emptyBucketCount = 0;
+        for (int v : counts) {
+            if (v == 0)
+                emptyBucketCount++;
+
+            float delta = (v - lambda);
+            variance += delta * delta;
+        }
+        variance /= m;
+
+        float iod = variance / lambda;
+        float emptyRate = ((float)emptyBucketCount) / m;
+        int collisions = n - (m - emptyBucketCount);
+
+        int[] sorted = counts.clone();
+        Arrays.sort(sorted);
+        int p50 = sorted[(int)(0.50 * (sorted.length - 1))];
+        int p90 = sorted[(int)(0.90 * (sorted.length - 1))];
+        int p99 = sorted[(int)(0.99 * (sorted.length - 1))];
+        int p999 = sorted[(int)(0.999 * (sorted.length - 1))];
+
+        return new HashDistribution(lambda, iod, emptyRate, collisions, p50, p90, p99, p999);
+    }
+}
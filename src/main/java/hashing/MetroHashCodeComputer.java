@@ -1,11 +1,17 @@
 package hashing;
 
+import internal.AsciiString;
 import sun.misc.Unsafe;
 
+import static internal.UnsafeAccess.UNSAFE;
+
 public class MetroHashCodeComputer extends HashCodeComputer {
-    public static final MetroHashCodeComputer INSTANCE = new MetroHashCodeComputer();
+    public static final MetroHashCodeComputer INSTANCE = new MetroHashCodeComputer(0);
+
+    private final long seed;
 
-    private MetroHashCodeComputer() {
+    private MetroHashCodeComputer(long seed) {
+        this.seed = seed;
     }
 
     //primes
@@ -14,11 +20,25 @@ public class MetroHashCodeComputer extends HashCodeComputer {
     private static final long k2 = 0x62992FC1L;
     private static final long k3 = 0x30BC5B29L;
 
+    @Override
+    public HashCodeComputer withSeed(long seed) {
+        return new MetroHashCodeComputer(seed);
+    }
+
+    @Override
+    public long hash64(AsciiString key) {
+        return hash64(key.getArray(), UNSAFE, key.getAddress(), 0, key.getLength());
+    }
+
     @Override
     protected int hashCode(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
+        return Long.hashCode(hash64(input, unsafeAccess, address, off, length));
+    }
+
+    private long hash64(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
         long remaining = length;
 
-        long h = k2 * k0;
+        long h = (seed + k2) * k0;
 
         if (length >= 32) {
             long v0 = h;
@@ -90,7 +110,7 @@ public class MetroHashCodeComputer extends HashCodeComputer {
             h ^= Long.rotateRight(h, 37) * k1;
         }
 
-        return Long.hashCode(finalize(h));
+        return finalize(h);
     }
 
     private static long finalize(long h) {
@@ -99,12 +119,14 @@ public class MetroHashCodeComputer extends HashCodeComputer {
         h ^= Long.rotateRight(h, 29);
         return h;
     }
-//
-//    @Override
-//    public int hashCode(long key) {
-//        long h = key * k3;
-//        h ^= Long.rotateRight(h, 55) * k1;
-//
-//        return Long.hashCode(finalize(h));
-//    }
+
+    // same as hashing 8 little-endian bytes of the key
+    @Override
+    public int hashCode(long key) {
+        long h = (seed + k2) * k0;
+        h += key * k3;
+        h ^= Long.rotateRight(h, 55) * k1;
+
+        return Long.hashCode(finalize(h));
+    }
 }
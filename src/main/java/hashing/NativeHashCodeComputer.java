@@ -1,21 +1,40 @@
 package hashing;
 
+import internal.AsciiString;
 import sun.misc.Unsafe;
 
+import static internal.UnsafeAccess.UNSAFE;
+
 public class NativeHashCodeComputer extends  HashCodeComputer {
     public static final NativeHashCodeComputer INSTANCE = new NativeHashCodeComputer();
-    private static final int M2 = 0x7A646E4D;
+    static final int M2 = 0x7A646E4D;
 
     private NativeHashCodeComputer() {
     }
 
     @Override
     protected int hashCode(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
+        final long hash = accumulate(input, unsafeAccess, address, off, length);
+        return (int)hash ^ (int)(hash >>> 25);
+    }
+
+    // the high bits of the accumulator stay zero for short keys, so they are mixed before use
+    @Override
+    public long hash64(AsciiString key) {
+        return mix64Bits(accumulate(key.getArray(), UNSAFE, key.getAddress(), 0, key.getLength()));
+    }
+
+    static long accumulate(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
         long hash = 0;
         int i = 0;
         for (i = 0; i + 4 <= length; i += 4) {
             hash = M2 * hash + unsafeAccess.getInt(input, address + off + i);
         }
+        return accumulateTail(hash, input, unsafeAccess, address, off, i, length);
+    }
+
+    /** Adds the last 0 to 3 bytes, from i on, to the hash of the 4-byte words before them */
+    static long accumulateTail(long hash, byte[] input, Unsafe unsafeAccess, long address, int off, int i, int length) {
         hash *= M2;
         int value = 0;
         if (i + 2 <= length) {
@@ -30,12 +49,15 @@ public class NativeHashCodeComputer extends  HashCodeComputer {
             hash += value;
             hash *= M2;
         }
-        return (int)hash ^ (int)(hash >>> 25);
+        return hash;
     }
 
-//    @Override
-//    protected int hashCode(long key) {
-//        long h = (key >>> 32) + (key & 0xFFFFFFFF00000000L) * M2;
-//        return (int) h ^ (int) (h >>> 25);
-//    }
+    // same as hashing 8 little-endian bytes of the key
+    @Override
+    public int hashCode(long key) {
+        long hash = (int) key;
+        hash = M2 * hash + (int) (key >>> 32);
+        hash *= M2;
+        return (int) hash ^ (int) (hash >>> 25);
+    }
 }
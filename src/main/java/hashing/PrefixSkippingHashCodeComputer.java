@@ -0,0 +1,112 @@
+package hashing;
+
+import internal.AsciiString;
+import internal.KeyComparison;
+import sun.misc.Unsafe;
+
+import static internal.UnsafeAccess.UNSAFE;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * For keys of one source which share a constant prefix, like the "SOURCE13:" of fixed_prefix keys: only the suffix
+ * after the prefix is hashed, with xxHash64 rounds and the MurmurHash3 finalizer, so the few varying trailing bytes
+ * still reach every bit. Keys without the prefix are hashed whole, so any key is safe to hash.
+ * <p>
+ * The whole key length goes into the hash too: a prefixed key and its bare suffix do not collide.
+ * Make one computer per key source, with its prefix given or {@link #learn learned} from sampled keys.
+ */
+public class PrefixSkippingHashCodeComputer extends HashCodeComputer {
+    // xxHash64 primes
+    private static final long P1 = -7046029288634856825L;
+    private static final long P2 = -4417276706812531889L;
+    private static final long P3 = 1609587929392839161L;
+    private static final long P4 = -8796714831421723037L;
+    private static final long P5 = 2870177450012600261L;
+
+    protected final byte[] prefix;
+
+    public PrefixSkippingHashCodeComputer(CharSequence prefix) {
+        this.prefix = new byte[prefix.length()];
+        for (int i = 0; i < prefix.length(); i++) {
+            this.prefix[i] = (byte) prefix.charAt(i);
+        }
+    }
+
+    /**
+     * @return computer skipping the longest prefix of all sampled keys, cut after its last separator (a byte which is not
+     *         a letter or a digit): digits shared by the sample only, like the high digits of sequence numbers,
+     *         stay in the hashed suffix. No separator, no prefix.
+     */
+    public static PrefixSkippingHashCodeComputer learn(AsciiString[] keys, int n) {
+        if (n == 0) {
+            return new PrefixSkippingHashCodeComputer("");
+        }
+
+        final AsciiString first = keys[0];
+        int common = first.getLength();
+        for (int k = 1; k < n && common > 0; k++) {
+            final AsciiString key = keys[k];
+            common = Math.min(common, key.getLength());
+            for (int i = 0; i < common; i++) {
+                if (UNSAFE.getByte(key.getArray(), key.getAddress() + i) != UNSAFE.getByte(first.getArray(), first.getAddress() + i)) {
+                    common = i;
+                    break;
+                }
+            }
+        }
+
+        while (common > 0 && Character.isLetterOrDigit(UNSAFE.getByte(first.getArray(), first.getAddress() + common - 1))) {
+            common--;
+        }
+        return new PrefixSkippingHashCodeComputer(first.toString().substring(0, common));
+    }
+
+    public String getPrefix() {
+        return new String(prefix);
+    }
+
+    @Override
+    public long hash64(AsciiString key) {
+        return hash64(key.getArray(), UNSAFE, key.getAddress(), 0, key.getLength());
+    }
+
+    @Override
+    protected int hashCode(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
+        return Long.hashCode(hash64(input, unsafeAccess, address, off, length));
+    }
+
+    // the words of a suffix overlap rather than end in a byte loop: any suffix up to 16 bytes is two reads
+    private long hash64(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
+        final int skip = hasPrefix(input, address + off, length) ? prefix.length : 0;
+        long at = address + off + skip;
+        int remaining = length - skip;
+
+        long hash = P5 + length;
+        for (; remaining > 16; at += 8, remaining -= 8) {
+            hash ^= Long.rotateLeft(unsafeAccess.getLong(input, at) * P2, 31) * P1;
+            hash = Long.rotateLeft(hash, 27) * P1 + P4;
+        }
+        if (remaining >= 8) {
+            hash ^= Long.rotateLeft(unsafeAccess.getLong(input, at) * P2, 31) * P1;
+            hash ^= Long.rotateLeft(unsafeAccess.getLong(input, at + remaining - 8) * P3, 29) * P2;
+        } else if (remaining >= 4) {
+            final long words = (unsafeAccess.getInt(input, at) & 0xFFFFFFFFL) << 32 | (unsafeAccess.getInt(input, at + remaining - 4) & 0xFFFFFFFFL);
+            hash ^= Long.rotateLeft(words * P2, 31) * P1;
+        } else if (remaining > 0) {
+            final int bytes = (unsafeAccess.getByte(input, at) & 0xFF) << 16
+                    | (unsafeAccess.getByte(input, at + remaining / 2) & 0xFF) << 8
+                    | (unsafeAccess.getByte(input, at + remaining - 1) & 0xFF);
+            hash ^= bytes * P5;
+        }
+        return mix64Bits(hash);
+    }
+
+    private boolean hasPrefix(byte[] input, long address, int length) {
+        return length >= prefix.length && KeyComparison.scalarEquals(input, address, prefix, ARRAY_BYTE_BASE_OFFSET, prefix.length);
+    }
+
+    @Override
+    public int hashCode(long key) {
+        return mix64(key);
+    }
+}
@@ -4,50 +4,70 @@ import jdk.incubator.vector.*;
 import sun.misc.Unsafe;
 
 import static jdk.incubator.vector.VectorOperators.ADD;
+import static jdk.incubator.vector.VectorOperators.B2I;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
 
-//TODO: Allocates memory
+/**
+ * {@link DefaultHashCodeComputer} with the Vector API: same hash codes, one int lane per key byte.
+ * <p>
+ * The shape is picked at class init ({@code SPECIES_PREFERRED}) and all constants are vectors built once.
+ * The partial chunk is read as a full vector within the array and its extra lanes get zero weights: on JDK 17 a
+ * masked load costs a mask and a blend, and it is not intrinsified (allocates) when the vector crosses the array end.
+ * So the loop runs on registers only and allocates nothing once compiled. Keys too close to the end of their array
+ * for a full vector load fall back to the scalar reference.
+ */
 public class VectorizedDefaultHashCodeComputer extends HashCodeComputer {
     public static final VectorizedDefaultHashCodeComputer INSTANCE = new VectorizedDefaultHashCodeComputer();
-    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_256;
-    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_256;
 
-    private static final int[] POWERS_OF_31_BACKWARDS = new int[33];
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = INT_SPECIES.length();
+    // as many byte lanes as int lanes, but no byte vector is narrower than 64 bits
+    private static final VectorSpecies<Byte> BYTE_SPECIES = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, LANES * Byte.SIZE)));
+
+    private static final int P = 31;
+    // POWERS[k] = P^(LANES - 1 - k) for k < LANES, 0 after them: a slice from LANES - n weights n bytes of a short key
+    private static final int[] POWERS = new int[2 * LANES];
+    private static final int[] POWERS_OF_P = new int[LANES + 1]; // P^k
     static {
-        POWERS_OF_31_BACKWARDS[POWERS_OF_31_BACKWARDS.length - 1] = 1;
-        for (int i = POWERS_OF_31_BACKWARDS.length - 2; i >= 0; --i) {
-            POWERS_OF_31_BACKWARDS[i] = 31 * POWERS_OF_31_BACKWARDS[i + 1];
+        POWERS_OF_P[0] = 1;
+        for (int k = 1; k <= LANES; k++) {
+            POWERS_OF_P[k] = P * POWERS_OF_P[k - 1];
+        }
+        for (int k = 0; k < LANES; k++) {
+            POWERS[k] = POWERS_OF_P[LANES - 1 - k];
         }
     }
+    private static final IntVector WEIGHTS = IntVector.fromArray(INT_SPECIES, POWERS, 0);
+    private static final IntVector CHUNK_MULTIPLIER = IntVector.broadcast(INT_SPECIES, POWERS_OF_P[LANES]);
 
     private VectorizedDefaultHashCodeComputer() {
     }
 
     @Override
     protected int hashCode(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
-        IntVector next = IntVector.broadcast(INT_SPECIES, POWERS_OF_31_BACKWARDS[33 - 9]);
-        var coefficients = IntVector.fromArray(INT_SPECIES, POWERS_OF_31_BACKWARDS, 33 - 8);
-        IntVector acc = IntVector.zero(INT_SPECIES);
-        int i;
-        for (i = length; i - INT_SPECIES.length() >= 0; i -= INT_SPECIES.length()) {
-            VectorMask<Byte> mask = BYTE_SPECIES.indexInRange(0, INT_SPECIES.length());
-            ByteVector values = ByteVector.fromArray(BYTE_SPECIES, input, off + i - INT_SPECIES.length(), mask);
-            IntVector iValues = (IntVector) values.convertShape(VectorOperators.B2I, INT_SPECIES, 0);
-            acc = acc.add(coefficients.mul(iValues));
-            coefficients = coefficients.mul(next);
+        final int index = (int) (address - ARRAY_BYTE_BASE_OFFSET) + off;
+        if (input == null || input.length - index < BYTE_SPECIES.length() + Math.max(0, length - LANES)) {
+            return DefaultHashCodeComputer.INSTANCE.hashCode(input, unsafeAccess, address, off, length);
         }
-        if (i > 0) {
-            VectorMask<Byte> mask = BYTE_SPECIES.indexInRange(0, length);
-            ByteVector values = ByteVector.fromArray(BYTE_SPECIES, input, off, mask);
-            IntVector iValues = (IntVector) values.convertShape(VectorOperators.B2I, INT_SPECIES, 0);
-            acc = acc.add(coefficients.mul(iValues));
-            coefficients = coefficients.mul(next);
+
+        // the first length % LANES bytes: a full vector whose other lanes get zero weights
+        final int head = length < LANES ? length : length % LANES;
+        int hash = load(input, index).mul(IntVector.fromArray(INT_SPECIES, POWERS, LANES - head)).reduceLanes(ADD);
+
+        IntVector acc = IntVector.zero(INT_SPECIES);
+        for (int i = head; i < length; i += LANES) {
+            hash *= POWERS_OF_P[LANES];
+            acc = acc.mul(CHUNK_MULTIPLIER).add(load(input, index + i));
         }
+        return hash + acc.mul(WEIGHTS).reduceLanes(ADD);
+    }
 
-        return acc.reduceLanes(ADD) + coefficients.lane(7);
+    private static IntVector load(byte[] input, int index) {
+        return (IntVector) ByteVector.fromArray(BYTE_SPECIES, input, index).convertShape(B2I, INT_SPECIES, 0);
     }
 
-//    @Override
-//    protected int hashCode(long key) {
-//        return (int) (key ^ (key >>> 32));
-//    }
+    @Override
+    public int hashCode(long key) {
+        return mix64(key);
+    }
 }
@@ -0,0 +1,88 @@
+package hashing;
+
+import internal.AsciiString;
+import jdk.incubator.vector.*;
+import sun.misc.Unsafe;
+
+import java.nio.ByteOrder;
+
+import static internal.UnsafeAccess.UNSAFE;
+import static jdk.incubator.vector.VectorOperators.ADD;
+import static jdk.incubator.vector.VectorOperators.I2L;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * {@link NativeHashCodeComputer} with the Vector API: same hash codes (and {@link #hash64}), one long lane
+ * per 4-byte word of the key. The last 0 to 3 bytes are added the scalar way.
+ * <p>
+ * Built the way {@link VectorizedDefaultHashCodeComputer} is: {@code SPECIES_PREFERRED} picked at class init,
+ * constant vectors, a partial chunk loaded in full with zero weights and the scalar reference for keys at the very
+ * end of their array.
+ */
+public class VectorizedNativeHashCodeComputer extends HashCodeComputer {
+    public static final VectorizedNativeHashCodeComputer INSTANCE = new VectorizedNativeHashCodeComputer();
+
+    private static final VectorSpecies<Long> LONG_SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = LONG_SPECIES.length();
+    private static final VectorSpecies<Integer> INT_SPECIES = VectorSpecies.of(int.class, VectorShape.forBitSize(LANES * Integer.SIZE));
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder(); // as Unsafe#getInt reads words
+
+    private static final long P = NativeHashCodeComputer.M2;
+    // POWERS[k] = P^(LANES - 1 - k) for k < LANES, 0 after them: a slice from LANES - n weights n words of a short key
+    private static final long[] POWERS = new long[2 * LANES];
+    private static final long[] POWERS_OF_P = new long[LANES + 1]; // P^k
+    static {
+        POWERS_OF_P[0] = 1;
+        for (int k = 1; k <= LANES; k++) {
+            POWERS_OF_P[k] = P * POWERS_OF_P[k - 1];
+        }
+        for (int k = 0; k < LANES; k++) {
+            POWERS[k] = POWERS_OF_P[LANES - 1 - k];
+        }
+    }
+    private static final LongVector WEIGHTS = LongVector.fromArray(LONG_SPECIES, POWERS, 0);
+    private static final LongVector CHUNK_MULTIPLIER = LongVector.broadcast(LONG_SPECIES, POWERS_OF_P[LANES]);
+
+    private VectorizedNativeHashCodeComputer() {
+    }
+
+    @Override
+    protected int hashCode(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
+        final long hash = accumulate(input, unsafeAccess, address, off, length);
+        return (int)hash ^ (int)(hash >>> 25);
+    }
+
+    @Override
+    public long hash64(AsciiString key) {
+        return mix64Bits(accumulate(key.getArray(), UNSAFE, key.getAddress(), 0, key.getLength()));
+    }
+
+    private static long accumulate(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
+        final int index = (int) (address - ARRAY_BYTE_BASE_OFFSET) + off;
+        final int words = length >>> 2;
+        if (input == null || input.length - index < Integer.BYTES * Math.max(words, LANES)) {
+            return NativeHashCodeComputer.accumulate(input, unsafeAccess, address, off, length);
+        }
+
+        // the first words % LANES words: a full vector whose other lanes get zero weights
+        final int head = words < LANES ? words : words % LANES;
+        long hash = load(input, index).mul(LongVector.fromArray(LONG_SPECIES, POWERS, LANES - head)).reduceLanes(ADD);
+
+        LongVector acc = LongVector.zero(LONG_SPECIES);
+        for (int w = head; w < words; w += LANES) {
+            hash *= POWERS_OF_P[LANES];
+            acc = acc.mul(CHUNK_MULTIPLIER).add(load(input, index + Integer.BYTES * w));
+        }
+        hash += acc.mul(WEIGHTS).reduceLanes(ADD);
+        return NativeHashCodeComputer.accumulateTail(hash, input, unsafeAccess, address, off, Integer.BYTES * words, length);
+    }
+
+    private static LongVector load(byte[] input, int index) {
+        return (LongVector) IntVector.fromByteArray(INT_SPECIES, input, index, ORDER).convertShape(I2L, LONG_SPECIES, 0);
+    }
+
+    @Override
+    public int hashCode(long key) {
+        return NativeHashCodeComputer.INSTANCE.hashCode(key);
+    }
+}
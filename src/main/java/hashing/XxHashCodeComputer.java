@@ -1,11 +1,22 @@
 package hashing;
 
+import internal.AsciiString;
 import sun.misc.Unsafe;
 
+import static internal.UnsafeAccess.UNSAFE;
+
 public class XxHashCodeComputer extends HashCodeComputer {
-    public static final XxHashCodeComputer INSTANCE = new XxHashCodeComputer();
+    public static final XxHashCodeComputer INSTANCE = new XxHashCodeComputer(0);
+
+    private final long seed;
 
-    private XxHashCodeComputer() {
+    private XxHashCodeComputer(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public HashCodeComputer withSeed(long seed) {
+        return new XxHashCodeComputer(seed);
     }
 
     // Primes if treated as unsigned
@@ -15,16 +26,25 @@ public class XxHashCodeComputer extends HashCodeComputer {
     private static final long P4 = -8796714831421723037L;
     private static final long P5 = 2870177450012600261L;
 
+    @Override
+    public long hash64(AsciiString key) {
+        return hash64(key.getArray(), UNSAFE, key.getAddress(), 0, key.getLength());
+    }
+
     @Override
     protected int hashCode(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
+        return Long.hashCode(hash64(input, unsafeAccess, address, off, length));
+    }
+
+    private long hash64(byte[] input, Unsafe unsafeAccess, long address, int off, int length) {
         long hash;
         long remaining = length;
 
         if (remaining >= 32) {
-            long v1 = P1 + P2;
-            long v2 = P2;
-            long v3 = 0;
-            long v4 = -P1;
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
 
             do {
                 v1 += unsafeAccess.getLong(input, address + off) * P2;
@@ -76,7 +96,7 @@ public class XxHashCodeComputer extends HashCodeComputer {
             hash ^= v4;
             hash = hash * P1 + P4;
         } else {
-            hash = P5;
+            hash = seed + P5;
         }
 
         hash += length;
@@ -106,7 +126,7 @@ public class XxHashCodeComputer extends HashCodeComputer {
             ++off;
         }
 
-        return Long.hashCode(finalize(hash));
+        return finalize(hash);
     }
 
     private static long finalize(long hash) {
@@ -118,16 +138,17 @@ public class XxHashCodeComputer extends HashCodeComputer {
         return hash;
     }
 
-//    @Override
-//    public int hashCode(long key) {
-//        long hash = 8;
-//
-//        long k1 = key;
-//        k1 *= P2;
-//        k1 = Long.rotateLeft(k1, 31);
-//        k1 *= P1;
-//        hash ^= k1;
-//        hash = Long.rotateLeft(hash, 27) * P1 + P4;
-//        return Long.hashCode(finalize(hash));
-//    }
+    // same as hashing 8 little-endian bytes of the key
+    @Override
+    public int hashCode(long key) {
+        long hash = seed + P5 + 8;
+
+        long k1 = key;
+        k1 *= P2;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= P1;
+        hash ^= k1;
+        hash = Long.rotateLeft(hash, 27) * P1 + P4;
+        return Long.hashCode(finalize(hash));
+    }
 }
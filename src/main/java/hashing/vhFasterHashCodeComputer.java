@@ -27,9 +27,9 @@ public class vhFasterHashCodeComputer extends VarHandleHashCodeComputer{
         return hash;
     }
 
-//    @Override
-//    protected int hashCode(long key) {
-//        return (int) (key ^ (key >>> 32));
-//    }
+    @Override
+    public int hashCode(long key) {
+        return mix64(key);
+    }
 
 }
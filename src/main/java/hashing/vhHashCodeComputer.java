@@ -1,17 +1,46 @@
 package hashing;
 
+import internal.AsciiString;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
 import sun.misc.Unsafe;
 
+import java.util.Arrays;
+
+import static internal.UnsafeAccess.UNSAFE;
+
+import static jdk.incubator.vector.VectorOperators.AND;
+import static jdk.incubator.vector.VectorOperators.ASHR;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.NOT;
+import static jdk.incubator.vector.VectorOperators.XOR;
+import static sun.misc.Unsafe.ARRAY_INT_BASE_OFFSET;
+
 public class vhHashCodeComputer extends VarHandleHashCodeComputer {
 
     public static final vhHashCodeComputer INSTANCE = new vhHashCodeComputer();
 
+    private static final int SEED = 0x9E3779B9;
+
+    // hashAll: one key per lane
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int MIN_BATCH_LANES = Math.max(2, LANES / 2);
+    // keys shorter on average are hashed by the scalar loop: the transposition costs more than the lanes save
+    private static final int MIN_LANE_KEY_LENGTH = 32;
+    // scratch layout: mix steps, lengths and hash codes of the keys (a row of LANES each), then the key words, transposed
+    private static final int STEPS = 0;
+    private static final int LENGTHS = LANES;
+    private static final int RESULTS = 2 * LANES;
+    private static final int WORDS = 3 * LANES;
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[WORDS + 8 * LANES]);
+
     private vhHashCodeComputer() {
     }
 
     @Override
     protected int hashCode(byte[] a, Unsafe unsafeAccess, long address, int off, int len) {
-        int h = 0x9E3779B9;
+        int h = SEED;
         int i = 0;
         for (; i + 8 <= len; i += 8) {
             long v = (long) LONG_LE.get(a, off + i);
@@ -33,10 +62,115 @@ public class vhHashCodeComputer extends VarHandleHashCodeComputer {
         return fmix32(h, len);
     }
 
-//    @Override
-//    protected int hashCode(long key) {
-//        return (int) (key ^ (key >>> 32));
-//    }
+    /**
+     * Lane-parallel version of the loop above: a key is len / 4 words and the zero-padded tail word, and every lane
+     * mixes the words of its key, one row of the transposed key words at a time. Lanes of shorter keys stop mixing
+     * when their words run out, then all of them are finalized together.
+     */
+    @Override
+    public void hashAll(AsciiString[] keys, int n, int[] out) {
+        int[] scratch = SCRATCH.get();
+        int base = 0;
+        for (; n - base >= MIN_BATCH_LANES; base += LANES) {
+            final int count = Math.min(LANES, n - base);
+            if (totalLength(keys, base, count) >= (long) MIN_LANE_KEY_LENGTH * count) {
+                scratch = hashLanes(keys, base, count, out, scratch);
+            } else {
+                for (int k = 0; k < count; k++) {
+                    out[base + k] = hashCode(keys[base + k]);
+                }
+            }
+        }
+        // too few keys left to pay for the transposition
+        for (; base < n; base++) {
+            out[base] = hashCode(keys[base]);
+        }
+    }
+
+    private static long totalLength(AsciiString[] keys, int base, int count) {
+        long total = 0;
+        for (int k = 0; k < count; k++) {
+            total += keys[base + k].getLength();
+        }
+        return total;
+    }
+
+    private int[] hashLanes(AsciiString[] keys, int base, int count, int[] out, int[] scratch) {
+        int maxSteps = 0;
+        for (int k = 0; k < LANES; k++) {
+            int steps = 0;
+            if (k < count) {
+                final AsciiString key = keys[base + k];
+                final long cached = key.getCachedHash();
+                if (isOwnCachedHash(cached)) {
+                    out[base + k] = (int) cached;
+                } else {
+                    steps = steps(key.getLength());
+                    if (scratch.length < WORDS + steps * LANES) {
+                        scratch = Arrays.copyOf(scratch, Math.max(WORDS + steps * LANES, 2 * scratch.length));
+                        SCRATCH.set(scratch);
+                    }
+                    transpose(key, scratch, k);
+                    maxSteps = Math.max(maxSteps, steps);
+                }
+            }
+            scratch[STEPS + k] = steps; // 0 for cached keys and missing ones: their lanes never mix
+        }
+        if (maxSteps == 0) {
+            return scratch;
+        }
+
+        // lanes keep mixing while their remaining steps are not negative: an all ones mask, without mask registers
+        // (compare and blend cost about twice as much on JDK 17)
+        IntVector remaining = IntVector.fromArray(SPECIES, scratch, STEPS);
+        IntVector h = IntVector.broadcast(SPECIES, SEED);
+        for (int j = 0; j < maxSteps; j++) {
+            IntVector mixed = mix32(h.lanewise(XOR, IntVector.fromArray(SPECIES, scratch, WORDS + j * LANES)));
+            remaining = remaining.sub(1);
+            IntVector live = remaining.lanewise(NOT).lanewise(ASHR, 31);
+            h = h.lanewise(XOR, mixed.lanewise(XOR, h).lanewise(AND, live));
+        }
+        fmix32(h.lanewise(XOR, IntVector.fromArray(SPECIES, scratch, LENGTHS))).intoArray(scratch, RESULTS);
+
+        for (int k = 0; k < count; k++) {
+            if (scratch[STEPS + k] != 0) {
+                out[base + k] = scratch[RESULTS + k];
+                cacheHashCode(keys[base + k], scratch[RESULTS + k]);
+            }
+        }
+        return scratch;
+    }
+
+    private static int steps(int len) {
+        return len / 4 + 1;
+    }
+
+    // writes the words of the key, as hashCode reads them, down the lane k column
+    private static void transpose(AsciiString key, int[] scratch, int k) {
+        final byte[] a = key.getArray();
+        final int len = key.getLength();
+
+        // Unsafe: the bounds checks of array stores down a column take a third of the time
+        final long address = key.getAddress();
+        long column = ARRAY_INT_BASE_OFFSET + (long) Integer.BYTES * (WORDS + k);
+        int i = 0;
+        for (; i + 4 <= len; i += 4, column += (long) Integer.BYTES * LANES) {
+            UNSAFE.putInt(scratch, column, UNSAFE.getInt(a, address + i));
+        }
+        int t = 0;
+        int rem = len - i;
+        if (rem > 0) t ^= (UNSAFE.getByte(a, address + i) & 0xFF);
+        if (rem > 1) t ^= (UNSAFE.getByte(a, address + i + 1) & 0xFF) << 8;
+        if (rem > 2) t ^= (UNSAFE.getByte(a, address + i + 2) & 0xFF) << 16;
+        UNSAFE.putInt(scratch, column, t);
+
+        scratch[LENGTHS + k] = len;
+    }
+
+    @Override
+    public int hashCode(long key) {
+        return mix64(key);
+    }
 
 
     private static int mix32(int x) {
@@ -46,6 +180,13 @@ public class vhHashCodeComputer extends VarHandleHashCodeComputer {
         return x * 0x846ca68b;
     }
 
+    private static IntVector mix32(IntVector x) {
+        x = x.lanewise(XOR, x.lanewise(LSHR, 16));
+        x = x.mul(0x7feb352d);
+        x = x.lanewise(XOR, x.lanewise(LSHR, 15));
+        return x.mul(0x846ca68b);
+    }
+
     private static int fmix32(int x, int len) {
         x ^= len;
         x ^= x >>> 16;
@@ -55,4 +196,13 @@ public class vhHashCodeComputer extends VarHandleHashCodeComputer {
         x ^= x >>> 16;
         return x;
     }
+
+    // the lengths are xor-ed in already
+    private static IntVector fmix32(IntVector x) {
+        x = x.lanewise(XOR, x.lanewise(LSHR, 16));
+        x = x.mul(0x85ebca6b);
+        x = x.lanewise(XOR, x.lanewise(LSHR, 13));
+        x = x.mul(0xc2b2ae35);
+        return x.lanewise(XOR, x.lanewise(LSHR, 16));
+    }
 }
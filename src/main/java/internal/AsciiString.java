@@ -2,15 +2,30 @@ package internal;
 
 import hashing.NativeHashCodeComputer;
 
-import static internal.UnsafeAccess.UNSAFE;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
 
 public final class AsciiString {
     private static final byte[] MIN_INTEGER_VALUE = String.valueOf(Integer.MIN_VALUE).getBytes();
+    public static final long NO_CACHED_HASH = 0; // computer ids start from 1
+    private static final VarHandle CACHED_HASH;
+
+    static {
+        try {
+            CACHED_HASH = MethodHandles.lookup().findVarHandle(AsciiString.class, "cachedHash", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     private byte[] array;
     private int length;
     private final long address;
+    // computer id (high half) and hash code (low half) in one word. Keys may be hashed by several threads of
+    // the concurrent maps: opaque access keeps the long atomic (JLS 17.7 lets plain longs tear) at the cost of a plain one on x86
+    private long cachedHash = NO_CACHED_HASH;
 
     public AsciiString(final CharSequence value) {
         this(value.length());
@@ -38,6 +53,19 @@ public final class AsciiString {
         return length;
     }
 
+    /** @return hash code set by {@link #setCachedHash} since the last change of the string, or {@link #NO_CACHED_HASH} */
+    public long getCachedHash() {
+        return (long) CACHED_HASH.getOpaque(this);
+    }
+
+    public void setCachedHash(int computerId, int hash) {
+        CACHED_HASH.setOpaque(this, ((long) computerId << 32) | (hash & 0xFFFFFFFFL));
+    }
+
+    public void clearCachedHash() {
+        CACHED_HASH.setOpaque(this, NO_CACHED_HASH);
+    }
+
     public AsciiString append(final int value) {
         if (value == Integer.MIN_VALUE) {
             ensureCapacity(length + MIN_INTEGER_VALUE.length);
@@ -98,6 +126,12 @@ public final class AsciiString {
         return this;
     }
 
+    public AsciiString append(final char value) {
+        ensureCapacity(length + 1);
+        array[length++] = (byte) value;
+        return this;
+    }
+
     public AsciiString append(final byte[] bytes) {
         return append(bytes, 0, bytes.length);
     }
@@ -119,7 +153,9 @@ public final class AsciiString {
         return this;
     }
 
+    // every append goes through here, so it also drops the cached hash
     private void ensureCapacity(final int requiredCapacity) {
+        clearCachedHash();
         if (requiredCapacity > array.length) {
             final int newCapacity = Math.max(requiredCapacity, array.length * 2);
             final byte[] newArray = new byte[newCapacity];
@@ -174,37 +210,7 @@ public final class AsciiString {
             return false;
         }
 
-        int i = 0;
-        while (i + 8 <= length) {
-            long fstLong = UNSAFE.getLong(array, address + i);
-            long sndLong = UNSAFE.getLong(other.array, other.address + i);
-
-            if (fstLong != sndLong) {
-                return false;
-            }
-            i += 8;
-        }
-
-        if (i + 4 <= length) {
-            int fstInt = UNSAFE.getInt(array, address + i);
-            int sndInt = UNSAFE.getInt(other.array, other.address + i);
-
-            if (fstInt != sndInt) {
-                return false;
-            }
-            i += 4;
-        }
-
-        if (i + 2 <= length) {
-            int fstShort = UNSAFE.getShort(array, address + i);
-            int sndShort = UNSAFE.getShort(other.array, other.address + i);
-
-            if (fstShort != sndShort) {
-                return false;
-            }
-            i += 2;
-        }
-        return i == length || UNSAFE.getByte(array, address + i) == UNSAFE.getByte(other.array, other.address + i);
+        return KeyComparison.equals(array, address, other.array, other.address, length);
     }
 
     @Override
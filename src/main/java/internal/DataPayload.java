@@ -4,6 +4,13 @@ package internal;
 public class DataPayload {
     private final AsciiString key;
     private int inCachePosition = -1;
+    private int handleGeneration;
+
+    // links of the InactiveList holding the entry
+    InactiveList inactiveList;
+    DataPayload inactivePrev;
+    DataPayload inactiveNext;
+    long inactiveSinceNanos;
 
     public DataPayload(AsciiString key) {
         this.key = key;
@@ -21,6 +28,14 @@ public class DataPayload {
         return inCachePosition;
     }
 
+    public void setHandleGeneration(int handleGeneration) {
+        this.handleGeneration = handleGeneration;
+    }
+
+    public int getHandleGeneration() {
+        return handleGeneration;
+    }
+
     public AsciiString getKey() {
         return key;
     }
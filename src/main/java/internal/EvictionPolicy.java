@@ -0,0 +1,35 @@
+package internal;
+
+/**
+ * Chooses which inactive entries a cache keeps, at most {@link #capacity()} of them.
+ * Entries are linked through themselves (see {@link InactiveList}), so policies do not allocate on deactivate or access.
+ */
+public interface EvictionPolicy {
+
+    /** Creates a policy for the cache, capacity being its maxInactiveDataCount */
+    interface Factory {
+        EvictionPolicy create(int capacity);
+    }
+
+    /**
+     * Adds a deactivated entry.
+     * @throws IllegalArgumentException if the entry is inactive already; nothing is evicted then
+     * @return entry to be evicted from the cache (which may be the added one), or null
+     */
+    DataPayload add(DataPayload entry);
+
+    /** Called on every cache hit, of an active or inactive entry */
+    void recordAccess(DataPayload entry);
+
+    /** @return false if the entry is not inactive */
+    boolean remove(DataPayload entry);
+
+    /** @return inactive entry which has expired by nowNanos, or null; see {@link InactiveList#takeExpired} */
+    DataPayload takeExpired(long nowNanos);
+
+    /** @param ttlNanos time after which inactive entries expire, or {@link InactiveList#NO_TTL} */
+    void setTtl(long ttlNanos);
+
+    int capacity();
+    int size();
+}
@@ -0,0 +1,49 @@
+package internal;
+
+/** Evicts the entry deactivated first; accesses do not change the order */
+public class FifoEvictionPolicy implements EvictionPolicy {
+    protected final InactiveList list;
+
+    public FifoEvictionPolicy(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Inactive list capacity must be positive");
+        list = new InactiveList(capacity);
+    }
+
+    @Override
+    public DataPayload add(DataPayload entry) {
+        InactiveList.checkNotInactive(entry);
+        DataPayload evicted = list.isFull() ? list.take() : null;
+        list.put(entry);
+        return evicted;
+    }
+
+    @Override
+    public void recordAccess(DataPayload entry) {
+    }
+
+    @Override
+    public boolean remove(DataPayload entry) {
+        return list.remove(entry);
+    }
+
+    @Override
+    public DataPayload takeExpired(long nowNanos) {
+        return list.takeExpired(nowNanos);
+    }
+
+    @Override
+    public void setTtl(long ttlNanos) {
+        list.setTtl(ttlNanos);
+    }
+
+    @Override
+    public int capacity() {
+        return list.capacity();
+    }
+
+    @Override
+    public int size() {
+        return list.size();
+    }
+}
@@ -0,0 +1,82 @@
+package internal;
+
+/**
+ * Count-min sketch estimating how often items were seen, with four 4-bit counters per item.
+ * <p>
+ * Every table word holds 16 counters. An item picks a group of four counters by its hash code,
+ * and each of its four hash functions selects the word, so one item touches one counter of each of four words.
+ * Counters saturate at 15 and are all halved once the number of increments reaches ten times the capacity,
+ * so past popularity fades away (TinyLFU "reset").
+ */
+public class FrequencySketch {
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_FREQUENCY = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    public FrequencySketch(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Frequency sketch capacity must not be negative");
+        int words = Integer.highestOneBit(Math.max(capacity - 1, 1) << 1);
+        table = new long[words];
+        tableMask = words - 1;
+        sampleSize = (int) Math.min(10L * Math.max(capacity, 1), Integer.MAX_VALUE);
+    }
+
+    public void increment(int hash) {
+        final int item = spread(hash);
+        final int start = (item & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(item, i), start + i);
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /** @return estimated number of increments of the hash code since it was last halved, 15 at most */
+    public int frequency(int hash) {
+        final int item = spread(hash);
+        final int start = (item & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            int counter = (int) ((table[indexOf(item, i)] >>> ((start + i) << 2)) & 0xF);
+            frequency = Math.min(frequency, counter);
+        }
+        return frequency;
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        final int shift = counter << 2;
+        final long mask = 0xFL << shift;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << shift;
+            return true;
+        }
+        return false;
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += hash >>> 32;
+        return (int) hash & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+}
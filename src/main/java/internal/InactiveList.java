@@ -0,0 +1,158 @@
+package internal;
+
+/**
+ * Bounded FIFO of inactive entries, linked through the entries themselves:
+ * put, take of the oldest entry and removal of any entry are O(1) and allocation-free.
+ * An entry may be in one list at a time.
+ * <p>
+ * Optionally entries also expire after a TTL. The list is FIFO and every entry is stamped with the latest time
+ * passed to {@link #takeExpired}, so the list is ordered by expiry time and only its head has to be checked.
+ */
+public class InactiveList {
+    public static final long NO_TTL = Long.MAX_VALUE;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final int capacity;
+    private int count;
+    private DataPayload first; // the oldest entry
+    private DataPayload last;
+
+    private long ttlNanos = NO_TTL;
+    private long nowNanos = NO_TIME; // latest time seen, never goes back
+
+    public InactiveList(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Inactive list capacity must not be negative");
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return true if the entry was added
+     */
+    public boolean put(DataPayload entry) {
+        if (count == capacity) {
+            return false;
+        }
+        checkNotInactive(entry);
+
+        entry.inactiveList = this;
+        entry.inactiveSinceNanos = nowNanos;
+        entry.inactivePrev = last;
+        entry.inactiveNext = null;
+        if (last == null) {
+            first = entry;
+        } else {
+            last.inactiveNext = entry;
+        }
+        last = entry;
+        count++;
+        return true;
+    }
+
+    /**
+     * @return the oldest entry or null when the list is empty
+     */
+    public DataPayload take() {
+        DataPayload entry = first;
+        if (entry != null) {
+            unlink(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * @return the oldest entry or null when the list is empty
+     */
+    public DataPayload peek() {
+        return first;
+    }
+
+    /** Sets the time stamped on entries put from now on; the clock is never moved back */
+    public void advanceClock(long nowNanos) {
+        if (this.nowNanos == NO_TIME || nowNanos - this.nowNanos > 0) {
+            this.nowNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Advances the clock, see {@link #advanceClock}.
+     * @return the oldest entry when it has been inactive for the TTL at least, otherwise null
+     */
+    public DataPayload takeExpired(long nowNanos) {
+        advanceClock(nowNanos);
+
+        DataPayload entry = first;
+        if (entry == null || ttlNanos == NO_TTL) {
+            return null;
+        }
+        if (entry.inactiveSinceNanos == NO_TIME) {
+            entry.inactiveSinceNanos = this.nowNanos; // deactivated before the clock was started
+        }
+        if (this.nowNanos - entry.inactiveSinceNanos < ttlNanos) {
+            return null;
+        }
+        unlink(entry);
+        return entry;
+    }
+
+    /** @param ttlNanos time after which inactive entries expire, or {@link #NO_TTL} */
+    public void setTtl(long ttlNanos) {
+        if (ttlNanos <= 0)
+            throw new IllegalArgumentException("TTL must be positive");
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * @return false if the entry is not in this list
+     */
+    public boolean remove(DataPayload entry) {
+        if (entry.inactiveList != this) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    public boolean contains(DataPayload entry) {
+        return entry.inactiveList == this;
+    }
+
+    /** Lets policies reject an entry which is in any list before they evict another one to make room for it */
+    public static void checkNotInactive(DataPayload entry) {
+        if (entry.inactiveList != null) {
+            throw new IllegalArgumentException("Entry is inactive already: " + entry);
+        }
+    }
+
+    private void unlink(DataPayload entry) {
+        DataPayload prev = entry.inactivePrev;
+        DataPayload next = entry.inactiveNext;
+        if (prev == null) {
+            first = next;
+        } else {
+            prev.inactiveNext = next;
+        }
+        if (next == null) {
+            last = prev;
+        } else {
+            next.inactivePrev = prev;
+        }
+
+        entry.inactiveList = null;
+        entry.inactivePrev = null;
+        entry.inactiveNext = null;
+        count--;
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
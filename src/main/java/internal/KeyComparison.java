@@ -0,0 +1,69 @@
+package internal;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static internal.UnsafeAccess.UNSAFE;
+import static jdk.incubator.vector.VectorOperators.NE;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * Byte equality of two keys of the same length: 8/4/2/1 byte steps for short keys, 16 byte vector compares
+ * from {@link #VECTOR_THRESHOLD} bytes on.
+ * <p>
+ * The vector path has no masked tail: the last vector ends at the last key byte and overlaps the one before it,
+ * so every load stays within the keys (on JDK 17 masked loads are not intrinsified near the array end).
+ * 128-bit vectors: wider byte masks make {@code anyTrue} several times slower on JDK 17, see {@code KeyComparisonBenchmark}.
+ */
+public final class KeyComparison {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+
+    /** Shortest key length compared with vectors, measured by {@code KeyComparisonBenchmark} */
+    public static final int VECTOR_THRESHOLD = 24;
+
+    private KeyComparison() {
+    }
+
+    /** Addresses are Unsafe addresses within the arrays, like {@link AsciiString#getAddress} */
+    public static boolean equals(byte[] lhs, long lhsAddress, byte[] rhs, long rhsAddress, int length) {
+        if (length >= VECTOR_THRESHOLD) {
+            return vectorEquals(lhs, (int) (lhsAddress - ARRAY_BYTE_BASE_OFFSET), rhs, (int) (rhsAddress - ARRAY_BYTE_BASE_OFFSET), length);
+        }
+        return scalarEquals(lhs, lhsAddress, rhs, rhsAddress, length);
+    }
+
+    /** A null base makes the address absolute, for keys stored off heap */
+    public static boolean scalarEquals(Object lhs, long lhsAddress, Object rhs, long rhsAddress, int length) {
+        int i = 0;
+        while (i + 8 <= length) {
+            if (UNSAFE.getLong(lhs, lhsAddress + i) != UNSAFE.getLong(rhs, rhsAddress + i)) {
+                return false;
+            }
+            i += 8;
+        }
+        if (i + 4 <= length) {
+            if (UNSAFE.getInt(lhs, lhsAddress + i) != UNSAFE.getInt(rhs, rhsAddress + i)) {
+                return false;
+            }
+            i += 4;
+        }
+        if (i + 2 <= length) {
+            if (UNSAFE.getShort(lhs, lhsAddress + i) != UNSAFE.getShort(rhs, rhsAddress + i)) {
+                return false;
+            }
+            i += 2;
+        }
+        return i == length || UNSAFE.getByte(lhs, lhsAddress + i) == UNSAFE.getByte(rhs, rhsAddress + i);
+    }
+
+    /** @param length at least 16 bytes, one full vector */
+    public static boolean vectorEquals(byte[] lhs, int lhsIndex, byte[] rhs, int rhsIndex, int length) {
+        final int last = length - SPECIES.length();
+        for (int i = 0; i < last; i += SPECIES.length()) {
+            if (ByteVector.fromArray(SPECIES, lhs, lhsIndex + i).compare(NE, ByteVector.fromArray(SPECIES, rhs, rhsIndex + i)).anyTrue()) {
+                return false;
+            }
+        }
+        return !ByteVector.fromArray(SPECIES, lhs, lhsIndex + last).compare(NE, ByteVector.fromArray(SPECIES, rhs, rhsIndex + last)).anyTrue();
+    }
+}
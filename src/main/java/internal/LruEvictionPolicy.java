@@ -0,0 +1,19 @@
+package internal;
+
+/**
+ * Evicts the inactive entry which was neither deactivated nor looked up for the longest time.
+ * A lookup of an inactive entry also restarts its TTL.
+ */
+public class LruEvictionPolicy extends FifoEvictionPolicy {
+
+    public LruEvictionPolicy(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public void recordAccess(DataPayload entry) {
+        if (list.remove(entry)) {
+            list.put(entry);
+        }
+    }
+}
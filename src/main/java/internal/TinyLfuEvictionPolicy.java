@@ -0,0 +1,95 @@
+package internal;
+
+/**
+ * W-TinyLFU: deactivated entries go to a small LRU window, and an entry leaving the window
+ * is admitted to the main LRU area only when it has been accessed more often than the main area's eviction victim.
+ * Otherwise the entry itself is evicted. So a burst of deactivations does not flush entries which are looked up
+ * again and again, while a newly popular entry still gets into the main area.
+ * <p>
+ * Access frequencies are estimated by a {@link FrequencySketch} of entry identity hash codes: an entry put into
+ * the cache again is a new entry with no history. An entry admitted to the main area restarts its TTL.
+ */
+public class TinyLfuEvictionPolicy implements EvictionPolicy {
+    // bigger than 1% of the paper: inactive orders are looked up again soon after deactivation, before their frequency builds up
+    public static final int DEFAULT_WINDOW_PERCENT = 10;
+
+    protected final InactiveList window;
+    protected final InactiveList main;
+    protected final FrequencySketch sketch;
+
+    public TinyLfuEvictionPolicy(int capacity) {
+        this(capacity, DEFAULT_WINDOW_PERCENT);
+    }
+
+    public TinyLfuEvictionPolicy(int capacity, int windowPercent) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Inactive list capacity must be positive");
+        if (windowPercent <= 0 || windowPercent > 100)
+            throw new IllegalArgumentException("windowPercent must be between 1 and 100");
+        int windowCapacity = Math.max(1, (int) ((long) capacity * windowPercent / 100));
+        window = new InactiveList(windowCapacity);
+        main = new InactiveList(capacity - windowCapacity);
+        sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public DataPayload add(DataPayload entry) {
+        InactiveList.checkNotInactive(entry);
+        sketch.increment(System.identityHashCode(entry));
+        DataPayload candidate = window.isFull() ? window.take() : null;
+        window.put(entry);
+        if (candidate == null) {
+            return null;
+        }
+
+        if (!main.isFull()) {
+            main.put(candidate);
+            return null;
+        }
+        DataPayload victim = main.peek();
+        if (victim == null || sketch.frequency(System.identityHashCode(candidate)) <= sketch.frequency(System.identityHashCode(victim))) {
+            return candidate;
+        }
+        main.take();
+        main.put(candidate);
+        return victim;
+    }
+
+    @Override
+    public void recordAccess(DataPayload entry) {
+        sketch.increment(System.identityHashCode(entry));
+        if (main.remove(entry)) {
+            main.put(entry);
+        } else if (window.remove(entry)) {
+            window.put(entry);
+        }
+    }
+
+    @Override
+    public boolean remove(DataPayload entry) {
+        return window.remove(entry) || main.remove(entry);
+    }
+
+    @Override
+    public DataPayload takeExpired(long nowNanos) {
+        main.advanceClock(nowNanos);
+        DataPayload entry = window.takeExpired(nowNanos);
+        return (entry != null) ? entry : main.takeExpired(nowNanos);
+    }
+
+    @Override
+    public void setTtl(long ttlNanos) {
+        window.setTtl(ttlNanos);
+        main.setTtl(ttlNanos);
+    }
+
+    @Override
+    public int capacity() {
+        return window.capacity() + main.capacity();
+    }
+
+    @Override
+    public int size() {
+        return window.size() + main.size();
+    }
+}
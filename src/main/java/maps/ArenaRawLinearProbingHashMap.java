@@ -0,0 +1,427 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+import internal.KeyComparison;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static internal.UnsafeAccess.UNSAFE;
+import static internal.UnsafeAccess.copyMemory;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * Variant of {@link RawLinearProbingHashMap} for keys of variable length: instead of a fixed maxKeyLength block,
+ * every slot holds a compact record (arena offset, key length, hash fingerprint) and key bytes are appended to a shared arena.
+ * <p>
+ * Arena space of freed keys is reused through free lists of 8 byte size classes. Chunks bigger than
+ * {@link #MAX_SIZE_CLASS} and fragmentation are reclaimed when the arena runs out of space: live keys are repacked
+ * into a new arena, which is grown by half only when the live keys would occupy more than 3/4 of it.
+ */
+public class ArenaRawLinearProbingHashMap implements Cache {
+    public static final int MIN_CAPACITY = 16;
+    public static final int DEFAULT_LOAD_FACTOR = 50;
+    public static final int DEFAULT_ARENA_BYTES_PER_SLOT = 8;
+    public static final int MAX_KEY_LENGTH = 0xFFFF;
+    public static final int CHUNK_ALIGNMENT = 8;
+    public static final int MAX_SIZE_CLASS = 256; // larger chunks are not kept in free lists
+    protected static final int NULL = Integer.MIN_VALUE;
+    private static final int NO_CHUNK = -1;
+    protected final int loadFactor;
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
+
+    protected int count = 0;
+    protected long collisions = 0;
+
+    protected DataPayload[] entries;
+    protected long[] records; // [arena offset: 32][key length: 16][hash fingerprint: 16]
+    protected int lengthMask;
+
+    protected byte[] arena;
+    protected int arenaTail;        // arena is append-only up to this offset
+    protected long arenaLiveBytes;  // sum of chunk sizes of keys in the table
+    protected final int[] freeLists; // head chunk offset for every size class, next offset is stored in the chunk itself
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
+
+    public ArenaRawLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR, DEFAULT_ARENA_BYTES_PER_SLOT);
+    }
+
+    /**
+     * @param arenaBytesPerSlot initial arena size per table slot, the arena grows on demand
+     */
+    public ArenaRawLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, int loadFactor, int arenaBytesPerSlot) {
+        if (activeDataCount < MIN_CAPACITY)
+            activeDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (loadFactor <= 0 || loadFactor > 100) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 100");
+        }
+
+        if (arenaBytesPerSlot <= 0) {
+            throw new IllegalArgumentException("arenaBytesPerSlot must be positive");
+        }
+
+        this.loadFactor = loadFactor;
+
+        int totalCacheSize;
+        if (maxInactiveDataCount < activeDataCount) {
+            totalCacheSize = activeDataCount * 2;
+        } else {
+            totalCacheSize = maxInactiveDataCount * 2;
+        }
+
+        allocTable(totalCacheSize);
+        arena = new byte[Math.max(CHUNK_ALIGNMENT, totalCacheSize * arenaBytesPerSlot)];
+        freeLists = new int[MAX_SIZE_CLASS / CHUNK_ALIGNMENT + 1];
+        Arrays.fill(freeLists, NO_CHUNK);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+        this.hashCodeComputer = hashCodeComputer;
+    }
+
+    private static long record(int offset, int length, int fingerprint) {
+        return ((long) offset << 32) | ((long) length << 16) | fingerprint;
+    }
+
+    private static int offsetOf(long record) {
+        return (int) (record >>> 32);
+    }
+
+    private static int lengthOf(long record) {
+        return (int) (record >>> 16) & 0xFFFF;
+    }
+
+    private static int fingerprintOf(long record) {
+        return (int) record & 0xFFFF;
+    }
+
+    private static int fingerprint(long hash) {
+        return (int) hash & 0xFFFF; // the slot index takes the high bits, see indexFor
+    }
+
+    private static int chunkSize(int length) {
+        return (Math.max(length, 1) + CHUNK_ALIGNMENT - 1) & -CHUNK_ALIGNMENT;
+    }
+
+    private boolean compareKeys(AsciiString key, long record) {
+        int length = lengthOf(record);
+        if (key.getLength() != length) {
+            return false;
+        }
+        return KeyComparison.equals(key.getArray(), key.getAddress(), arena, ARRAY_BYTE_BASE_OFFSET + offsetOf(record), length);
+    }
+
+    private int allocChunk(int size) {
+        if (size <= MAX_SIZE_CLASS) {
+            int sizeClass = size / CHUNK_ALIGNMENT;
+            int chunk = freeLists[sizeClass];
+            if (chunk != NO_CHUNK) {
+                freeLists[sizeClass] = UNSAFE.getInt(arena, ARRAY_BYTE_BASE_OFFSET + chunk);
+                return chunk;
+            }
+        }
+
+        if (arenaTail + size > arena.length) {
+            repackArena(size);
+        }
+        int chunk = arenaTail;
+        arenaTail += size;
+        return chunk;
+    }
+
+    private void freeChunk(long record) {
+        int size = chunkSize(lengthOf(record));
+        arenaLiveBytes -= size;
+
+        if (size <= MAX_SIZE_CLASS) {
+            int sizeClass = size / CHUNK_ALIGNMENT;
+            int chunk = offsetOf(record);
+            UNSAFE.putInt(arena, ARRAY_BYTE_BASE_OFFSET + chunk, freeLists[sizeClass]);
+            freeLists[sizeClass] = chunk;
+        }
+    }
+
+    // copies live keys to the beginning of a new arena, so free lists and the garbage of big chunks are dropped
+    private void repackArena(int requiredSize) {
+        long newLength = arena.length;
+        while ((arenaLiveBytes + requiredSize) * 4 > newLength * 3) {
+            newLength += newLength / 2;
+        }
+        if (newLength > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Key arena is too big: " + newLength);
+        }
+
+        final byte[] oldArena = arena;
+        arena = new byte[(int) newLength];
+        arenaTail = 0;
+        Arrays.fill(freeLists, NO_CHUNK);
+
+        for (int i = 0; i < entries.length; i++) {
+            if (isFilled(i)) {
+                long record = records[i];
+                int length = lengthOf(record);
+
+                System.arraycopy(oldArena, offsetOf(record), arena, arenaTail, length);
+                records[i] = record(arenaTail, length, fingerprintOf(record));
+                arenaTail += chunkSize(length);
+            }
+        }
+    }
+
+    private int nextFree(int idx) {
+        int attempts = 0;
+        while (attempts < entries.length && isFilled(idx)) {
+            idx = (idx + 1) & lengthMask;
+            attempts++;
+        }
+        collisions += (attempts > 0 ? 1 : 0);
+        return idx;
+    }
+
+    private long copyKey(AsciiString key, long hash) {
+        int length = key.getLength();
+        if (length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key is longer than " + MAX_KEY_LENGTH + " bytes");
+        }
+
+        int size = chunkSize(length);
+        int chunk = allocChunk(size);
+        arenaLiveBytes += size;
+        copyMemory(key.getArray(), key.getAddress(), arena, ARRAY_BYTE_BASE_OFFSET + chunk, length);
+        return record(chunk, length, fingerprint(hash));
+    }
+
+    private void setEntry(DataPayload entry, long record, int idx) {
+        entry.setInCachePosition(idx);
+        entries[idx] = entry;
+        records[idx] = record;
+    }
+
+    protected void allocTable(int cap) {
+        entries = new DataPayload[cap];
+        records = new long[cap];
+        lengthMask = cap - 1;
+    }
+
+    // key bytes stay in the arena, only the slot records are moved
+    protected void resizeTable(int newSize) {
+        handles.invalidateAll();
+        final int curLength = entries.length;
+        final DataPayload[] saveOrders = entries;
+        final long[] saveRecords = records;
+
+        allocTable(newSize);
+
+        for (int i = 0; i < curLength; i++) {
+            if (saveOrders[i] != null) {
+                final long hash = hashCodeComputer.hash64(saveOrders[i].getKey());
+                final long record = saveRecords[i];
+                int hidx = nextFree(indexFor(hash));
+                // the fingerprint changes on re-seed
+                setEntry(saveOrders[i], record(offsetOf(record), lengthOf(record), fingerprint(hash)), hidx);
+            }
+        }
+    }
+
+    /** Rebuilds the table at the same size with a new seed */
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        resizeTable(entries.length);
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    protected final boolean isFilled(int idx) {
+        return (entries[idx] != null);
+    }
+
+    protected final boolean isEmpty(int idx) {
+        return (entries[idx] == null);
+    }
+
+    protected void free(int idx) {
+        count--;
+        freeChunk(records[idx]);
+        entries[idx].setInCachePosition(-1);
+        entries[idx].setHandleGeneration(EntryHandles.NO_GENERATION);
+        entries[idx] = null;
+
+        compactChain(idx);
+    }
+
+    private void compactChain(int deletedIdx) {
+        int curIdx = deletedIdx;
+
+        while (true) {
+            curIdx = (curIdx + 1) & lengthMask;
+            if (isEmpty(curIdx)) {
+                break;
+            }
+
+            DataPayload entry = entries[curIdx];
+            int hidx = hashIndex(entry.getKey());
+            if ((curIdx < hidx && (hidx <= deletedIdx || deletedIdx <= curIdx)) ||
+                    (hidx <= deletedIdx && deletedIdx <= curIdx)) {
+                setEntry(entry, records[curIdx], deletedIdx);
+                entries[curIdx] = null;
+                deletedIdx = curIdx;
+            }
+        }
+    }
+
+    protected int find(AsciiString key) {
+        long hash = hashCodeComputer.hash64(key);
+        return find(indexFor(hash), fingerprint(hash), key);
+    }
+
+    protected int find(int hidx, int fingerprint, AsciiString key) {
+        int attempts = 0;
+        for (; attempts < entries.length && isFilled(hidx); hidx = (hidx + 1) & lengthMask, attempts++) {
+            long record = records[hidx];
+            if (fingerprintOf(record) == fingerprint && compareKeys(key, record)) {
+                return hidx;
+            }
+        }
+        return NULL;
+    }
+
+    protected int hashIndex(AsciiString key) {
+        return indexFor(hashCodeComputer.hash64(key));
+    }
+
+    // high bits, so the 16-bit fingerprint tells apart keys of the same slot at any table size
+    protected int indexFor(long hash) {
+        return HashCodeComputer.highBitsIndex(hash, entries.length);
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        AsciiString key = entry.getKey();
+        long hash = hashCodeComputer.hash64(key);
+        int hidx = indexFor(hash);
+
+        if (find(hidx, fingerprint(hash), key) != NULL) {
+            return false;
+        }
+
+        if (count * 100 >= entries.length * loadFactor) {
+            resizeTable(entries.length * 2);
+            hidx = indexFor(hash);
+        }
+
+        long record = copyKey(key, hash);
+        final int idx = nextFree(hidx);
+        count++;
+        setEntry(entry, record, idx);
+
+        final int probeLength = (idx - hidx) & lengthMask;
+        if (probeLength > maxProbeLength) {
+            reseed(probeLength);
+        }
+        return true;
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        int pos = find(key);
+
+        if (pos == NULL) {
+            return null;
+        }
+        DataPayload entry = entries[pos];
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        assert find(entry.getKey()) != NULL;
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length) ? entries[slot] : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return entries.length;
+    }
+
+    @Override
+    public int size () {
+        return count;
+    }
+
+    /** Bytes used to keep keys: slot records and the whole arena, including its free space. */
+    public long keyStorageBytes() {
+        return (long) records.length * Long.BYTES + arena.length;
+    }
+}
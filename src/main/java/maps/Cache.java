@@ -2,12 +2,121 @@ package maps;
 
 import internal.AsciiString;
 import internal.DataPayload;
+import internal.EvictionPolicy;
 
 public interface Cache {
+    long NO_HANDLE = -1;
+
     boolean putIfEmpty(DataPayload entry);
     DataPayload get(AsciiString key);
     void deactivate(DataPayload entry);
 
+    /**
+     * Makes an inactive entry active again, so it is not evicted. Deactivating it later puts it at the end of the eviction order.
+     * @return false when the entry is not inactive in this cache
+     */
+    boolean reactivate(DataPayload entry);
+
+    /**
+     * Evicts entries which have been inactive for the TTL set by {@link #setInactiveTtl}, oldest first.
+     * Times are {@link System#nanoTime()} readings and never go back; an earlier time does not move the clock.
+     * @return number of evicted entries
+     */
+    default int tick(long nowNanos) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Same as {@link #tick} followed by {@link #deactivate(DataPayload)}, so the entry is inactive since nowNanos */
+    default void deactivate(DataPayload entry, long nowNanos) {
+        tick(nowNanos);
+        deactivate(entry);
+    }
+
+    /** Inactive entries expire after ttlNanos in {@link #tick}, in addition to the maxInactiveDataCount cap */
+    default void setInactiveTtl(long ttlNanos) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Replaces the FIFO eviction of inactive entries, see {@link internal.LruEvictionPolicy} and {@link internal.TinyLfuEvictionPolicy}.
+     * Must be called while there are no inactive entries, before {@link #setInactiveTtl}.
+     */
+    default void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Looks up keys[0..n) into out[0..n), same as {@link #get} of every key.
+     * Implementations may hash the whole batch first and touch all home slots before resolving probes,
+     * so the cache misses of the batch overlap.
+     */
+    default void getAll(AsciiString[] keys, int n, DataPayload[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = get(keys[i]);
+        }
+    }
+
+    /** Puts entries[0..n) in order, out[i] being the result of {@link #putIfEmpty} of entries[i]; see {@link #getAll} */
+    default void putAllIfEmpty(DataPayload[] entries, int n, boolean[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = putIfEmpty(entries[i]);
+        }
+    }
+
+    /**
+     * Guards against keys which collide by accident or by design: when an insert probes more than maxProbeLength slots,
+     * the cache switches to a freshly seeded hash code computer (see {@link hashing.HashCodeComputer#withSeed})
+     * and rehashes its table: incrementally in the linear probing maps which migrate on resize, at once in the others.
+     * Maps which filter slots by a fingerprint count only the slots whose keys they compare,
+     * maps with a stash count the stashed keys they compare as well.
+     * @param listener told about every re-seed on the inserting thread, may be null
+     */
+    default void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        throw new UnsupportedOperationException();
+    }
+
+    @FunctionalInterface
+    interface ReseedListener {
+        /** @param probeLength probe length of the insert which triggered the re-seed */
+        void onReseed(int probeLength, int size, int capacity);
+    }
+
+    /**
+     * Removes the entry whether it is active or inactive. Lets an adapter keep one inactive queue
+     * for several caches, see {@link DecimalKeyCache}.
+     * @return false when the entry is not in this cache
+     */
+    default boolean remove(DataPayload entry) {
+        throw new UnsupportedOperationException();
+    }
+
     int capacity();
     int size();
+
+    /**
+     * Same as {@link #putIfEmpty} returning a handle of the new entry (slot and generation),
+     * which gives the entry back without hashing and comparing keys.
+     * @return {@link #NO_HANDLE} when the key is already present
+     */
+    default long putIfEmptyWithHandle(DataPayload entry) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return entry of the handle, or null when the handle is stale: the entry was evicted or moved
+     *         (table resize, probe chain compaction), so it has to be looked up by key
+     */
+    default DataPayload getByHandle(long handle) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** @return false when the handle is stale, see {@link #getByHandle} */
+    default boolean deactivateByHandle(long handle) {
+        DataPayload entry = getByHandle(handle);
+        if (entry == null) {
+            return false;
+        }
+        deactivate(entry);
+        return true;
+    }
 }
@@ -3,7 +3,8 @@ package maps;
 import hashing.HashCodeComputer;
 import internal.AsciiString;
 import internal.DataPayload;
-import internal.FixedSizeQueue;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
 
 import java.util.Arrays;
 
@@ -21,7 +22,9 @@ public final class ChainingHashMap implements Cache {
 
     private DataPayload[]     entries;
 
-    private final FixedSizeQueue<DataPayload> inactiveDataQueue;
+    private EvictionPolicy inactiveDataQueue;
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
 
     public ChainingHashMap(int initialActiveDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
         if (initialActiveDataCount < MIN_CAPACITY)
@@ -32,7 +35,7 @@ public final class ChainingHashMap implements Cache {
         }
 
         allocTable(initialActiveDataCount);
-        this.inactiveDataQueue = new FixedSizeQueue<>(maxInactiveDataCount);
+        this.inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
         this.hashCodeComputer = hashCodeComputer;
     }
 
@@ -84,6 +87,7 @@ public final class ChainingHashMap implements Cache {
         count--;
 
         entries[idx].setInCachePosition(-1);
+        entries[idx].setHandleGeneration(EntryHandles.NO_GENERATION);
         entries[idx] = null;
     }
 
@@ -144,6 +148,7 @@ public final class ChainingHashMap implements Cache {
     }
 
     private void resizeTable(int newSize) {
+        handles.invalidateAll();
         final int curLength = entries.length;
         final DataPayload[] saveEntries = entries;
         final int[] savePrev = prev;
@@ -185,13 +190,6 @@ public final class ChainingHashMap implements Cache {
         entry.setInCachePosition(idx);
     }
 
-    private void displaceOldestInactiveOrderIfQueueFull() {
-        if (inactiveDataQueue.isFull()) {
-            DataPayload oldEntry = inactiveDataQueue.take();
-            free(oldEntry.getInCachePosition());
-        }
-    }
-
     private DataPayload getEntry(AsciiString key) {
         int pos = find(key);
 
@@ -202,6 +200,9 @@ public final class ChainingHashMap implements Cache {
     public DataPayload get(AsciiString key) {
         DataPayload entry = getEntry(key);
         assert entry == null || key.equals(entry.getKey());
+        if (entry != null) {
+            inactiveDataQueue.recordAccess(entry);
+        }
         return entry;
     }
 
@@ -209,8 +210,53 @@ public final class ChainingHashMap implements Cache {
     public void deactivate(DataPayload entry) {
         assert find(entry.getKey()) != NULL;
 
-        displaceOldestInactiveOrderIfQueueFull();
-        inactiveDataQueue.put(entry);
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length) ? entries[slot] : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
     }
 
     @Override
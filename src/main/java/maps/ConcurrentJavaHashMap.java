@@ -0,0 +1,64 @@
+package maps;
+
+import internal.AsciiString;
+import internal.DataPayload;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Thread safe baseline built on java.util.concurrent collections */
+public class ConcurrentJavaHashMap implements Cache {
+    public static final int MIN_CAPACITY = 16;
+
+    private final ConcurrentHashMap<AsciiString, DataPayload> map;
+
+    private final ArrayBlockingQueue<DataPayload> inactiveDataQueue;
+
+    public ConcurrentJavaHashMap(int initialActiveDataCount, int maxInactiveDataCount) {
+        if (initialActiveDataCount < MIN_CAPACITY)
+            initialActiveDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(maxInactiveDataCount) != 1) {
+            throw new IllegalArgumentException("maxInactiveDataCount must be a power of 2");
+        }
+
+        this.map = new ConcurrentHashMap<>(initialActiveDataCount);
+        this.inactiveDataQueue = new ArrayBlockingQueue<>(maxInactiveDataCount);
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        return map.putIfAbsent(entry.getKey(), entry) == null;
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        return map.get(key);
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        while (!inactiveDataQueue.offer(entry)) {
+            DataPayload oldest = inactiveDataQueue.poll();
+            if (oldest != null) {
+                map.remove(oldest.getKey(), oldest);
+            }
+        }
+    }
+
+    /** O(maxInactiveDataCount): the queue is scanned under its lock */
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public int capacity() {
+        return 0;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+}
@@ -0,0 +1,438 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bucketized cuckoo hash map: {@link #BUCKET_SIZE}-way buckets, every key may live in one of two buckets only.
+ * <p>
+ * Both buckets are derived from a single hash code: the first one from its low bits, the alternate one
+ * by xor-ing the bucket with a mix of the hash code, so either bucket gives the other without the key.
+ * Full hash codes of a bucket take 16 bytes in {@link #hashCodes}, so a lookup reads at most two lines of them
+ * (plus the small stash when it is not empty) and dereferences an entry only when its full hash code matches.
+ * <p>
+ * Insert displaces ("kicks") entries to their alternate bucket for at most {@link #MAX_KICKS} steps.
+ * The entry left without a slot goes to the stash, and when the stash is full the table grows.
+ * The stash outgrows {@link #STASH_SIZE} only when doubling the table does not help (keys with equal hash codes).
+ * Entry slot (or {@code capacity() + stashIndex} for stashed entries) is kept in {@link DataPayload#getInCachePosition()}
+ * and updated on every kick.
+ */
+public class CuckooHashMap implements Cache {
+    public static final int MIN_CAPACITY = 16;
+    public static final float DEFAULT_LOAD_FACTOR = 0.9f;
+    public static final int BUCKET_SIZE = 4;
+    public static final int MAX_KICKS = 128;
+    public static final int STASH_SIZE = 4;
+    protected static final int BUCKET_SHIFT = 2;
+    protected static final int NULL = Integer.MIN_VALUE;
+
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
+    protected final float loadFactor;
+
+    protected int count = 0;
+
+    protected DataPayload[] entries; // null marks an empty slot
+    protected int[] hashCodes;
+    protected int bucketMask;
+    protected int threshold;
+
+    protected DataPayload[] stash = new DataPayload[STASH_SIZE];
+    protected int[] stashHashCodes = new int[STASH_SIZE];
+    protected int stashCount;
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+    protected int missComparisons; // keys compared by the last find which did not find its key
+
+    private int victimSeed = 0x2545F491; // xorshift state picking the way to kick
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
+
+    public CuckooHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR);
+    }
+
+    public CuckooHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor) {
+        if (activeDataCount < MIN_CAPACITY)
+            activeDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (loadFactor <= 0 || loadFactor > 1) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 1");
+        }
+
+        this.loadFactor = loadFactor;
+
+        int totalCacheSize;
+        if (maxInactiveDataCount < activeDataCount) {
+            totalCacheSize = activeDataCount * 2;
+        } else {
+            totalCacheSize = maxInactiveDataCount * 2;
+        }
+
+        allocTable(totalCacheSize);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+        this.hashCodeComputer = hashCodeComputer;
+    }
+
+    protected void allocTable(int cap) {
+        entries = new DataPayload[cap];
+        hashCodes = new int[cap];
+        bucketMask = (cap >> BUCKET_SHIFT) - 1;
+        threshold = (int)(cap * loadFactor);
+    }
+
+    protected void resizeTable(int newSize) {
+        handles.invalidateAll();
+        final DataPayload[] saveOrders = entries;
+        final int[] saveHashCodes = hashCodes;
+        final DataPayload[] saveStash = stash;
+        final int[] saveStashHashCodes = stashHashCodes;
+        final int saveStashCount = stashCount;
+
+        allocTable(newSize);
+        stash = new DataPayload[STASH_SIZE];
+        stashHashCodes = new int[STASH_SIZE];
+        stashCount = 0;
+
+        for (int i = 0; i < saveOrders.length; i++) {
+            if (saveOrders[i] != null) {
+                place(saveOrders[i], saveHashCodes[i], true);
+            }
+        }
+        for (int i = 0; i < saveStashCount; i++) {
+            place(saveStash[i], saveStashHashCodes[i], true);
+        }
+    }
+
+    /** Rebuilds the table at the same size with a new seed */
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] != null) {
+                hashCodes[i] = hashCodeComputer.hashCode(entries[i].getKey());
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            stashHashCodes[i] = hashCodeComputer.hashCode(stash[i].getKey());
+        }
+        resizeTable(entries.length);
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    protected final int bucketFor(int hash) {
+        return hashCodeComputer.modPowerOfTwoHashCode(hash, bucketMask + 1);
+    }
+
+    /** Alternate bucket of the key with the hash code stored in the bucket; never the same bucket */
+    protected final int altBucket(int bucket, int hash) {
+        return bucket ^ ((((hash * 0x5bd1e995) >>> 8) | 1) & bucketMask);
+    }
+
+    protected boolean keyEquals(AsciiString a, AsciiString b) {
+        if (a == null) {
+            return b == null;
+        }
+        return a.equals(b);
+    }
+
+    private int findInBucket(int bucket, int hash, AsciiString key) {
+        final int base = bucket << BUCKET_SHIFT;
+        for (int idx = base; idx < base + BUCKET_SIZE; idx++) {
+            if (hashCodes[idx] == hash && entries[idx] != null && keyEquals(entries[idx].getKey(), key)) {
+                return idx;
+            }
+        }
+        return NULL;
+    }
+
+    protected int find(int hash, AsciiString key) {
+        final int bucket = bucketFor(hash);
+        int idx = findInBucket(bucket, hash, key);
+        if (idx != NULL) {
+            return idx;
+        }
+        idx = findInBucket(altBucket(bucket, hash), hash, key);
+        if (idx != NULL) {
+            return idx;
+        }
+
+        int compared = countHashCode(bucket, hash) + countHashCode(altBucket(bucket, hash), hash);
+        for (int i = 0; i < stashCount; i++) {
+            if (stashHashCodes[i] == hash) {
+                if (keyEquals(stash[i].getKey(), key)) {
+                    return entries.length + i;
+                }
+                compared++;
+            }
+        }
+        missComparisons = compared;
+        return NULL;
+    }
+
+    /** @return number of entries of the bucket with the hash code, i.e. keys compared by a lookup */
+    private int countHashCode(int bucket, int hash) {
+        final int base = bucket << BUCKET_SHIFT;
+        int n = 0;
+        for (int idx = base; idx < base + BUCKET_SIZE; idx++) {
+            if (hashCodes[idx] == hash && entries[idx] != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    protected DataPayload entryAt(int pos) {
+        return pos < entries.length ? entries[pos] : stash[pos - entries.length];
+    }
+
+    private boolean putInBucket(int bucket, DataPayload entry, int hash) {
+        final int base = bucket << BUCKET_SHIFT;
+        for (int idx = base; idx < base + BUCKET_SIZE; idx++) {
+            if (entries[idx] == null) {
+                setSlot(idx, entry, hash);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setSlot(int idx, DataPayload entry, int hash) {
+        entries[idx] = entry;
+        hashCodes[idx] = hash;
+        entry.setInCachePosition(idx);
+    }
+
+    private int nextVictimWay() {
+        int x = victimSeed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        victimSeed = x;
+        return x & (BUCKET_SIZE - 1);
+    }
+
+    /**
+     * Places the entry into one of its buckets, kicking other entries to their alternate buckets when both are full.
+     * @param growStash whether the stash may grow beyond {@link #STASH_SIZE}
+     * @return entry left without a slot when both the kick path and the stash are exhausted, otherwise null
+     */
+    protected DataPayload place(DataPayload entry, int hash, boolean growStash) {
+        int bucket = bucketFor(hash);
+        if (putInBucket(bucket, entry, hash)) {
+            return null;
+        }
+        bucket = altBucket(bucket, hash);
+        if (putInBucket(bucket, entry, hash)) {
+            return null;
+        }
+
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int idx = (bucket << BUCKET_SHIFT) + nextVictimWay();
+            DataPayload victim = entries[idx];
+            int victimHash = hashCodes[idx];
+            setSlot(idx, entry, hash);
+
+            entry = victim;
+            hash = victimHash;
+            bucket = altBucket(bucket, hash);
+            if (putInBucket(bucket, entry, hash)) {
+                return null;
+            }
+        }
+
+        if (stashCount < stash.length || growStash) {
+            putInStash(entry, hash);
+            return null;
+        }
+        return entry;
+    }
+
+    private void putInStash(DataPayload entry, int hash) {
+        if (stashCount == stash.length) {
+            stash = Arrays.copyOf(stash, stashCount * 2);
+            stashHashCodes = Arrays.copyOf(stashHashCodes, stashCount * 2);
+        }
+        stash[stashCount] = entry;
+        stashHashCodes[stashCount] = hash;
+        entry.setInCachePosition(entries.length + stashCount);
+        stashCount++;
+    }
+
+    /**
+     * Growing the table does not help the key when both of its buckets are taken by keys with the same hash code:
+     * they share both buckets at any capacity.
+     */
+    private boolean bucketsHoldHashCode(int hash) {
+        final int bucket = bucketFor(hash);
+        return countHashCode(bucket, hash) == BUCKET_SIZE && countHashCode(altBucket(bucket, hash), hash) == BUCKET_SIZE;
+    }
+
+    protected void free(int pos) {
+        count--;
+        entryAt(pos).setInCachePosition(-1);
+        entryAt(pos).setHandleGeneration(EntryHandles.NO_GENERATION);
+
+        if (pos >= entries.length) {
+            removeFromStash(pos - entries.length);
+            return;
+        }
+
+        entries[pos] = null;
+        if (stashCount > 0) {
+            unstash(pos >> BUCKET_SHIFT);
+        }
+    }
+
+    private void removeFromStash(int stashIdx) {
+        stashCount--;
+        if (stashIdx != stashCount) {
+            stash[stashIdx] = stash[stashCount];
+            stashHashCodes[stashIdx] = stashHashCodes[stashCount];
+            stash[stashIdx].setInCachePosition(entries.length + stashIdx);
+        }
+        stash[stashCount] = null;
+    }
+
+    // moves a stashed entry into the freed bucket when it belongs there
+    private void unstash(int bucket) {
+        for (int i = 0; i < stashCount; i++) {
+            int hash = stashHashCodes[i];
+            int home = bucketFor(hash);
+            if (home == bucket || altBucket(home, hash) == bucket) {
+                DataPayload entry = stash[i];
+                removeFromStash(i);
+                putInBucket(bucket, entry, hash);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        if (count >= threshold) {
+            resizeTable(entries.length * 2);
+        }
+
+        AsciiString key = entry.getKey();
+        int hash = hashCodeComputer.hashCode(key);
+        if (find(hash, key) != NULL) {
+            return false;
+        }
+
+        DataPayload homeless = place(entry, hash, false);
+        if (homeless != null) {
+            final int homelessHash = hashCodeComputer.hashCode(homeless.getKey());
+            if (bucketsHoldHashCode(homelessHash)) {
+                putInStash(homeless, homelessHash);
+            } else {
+                resizeTable(entries.length * 2);
+                place(homeless, homelessHash, true);
+            }
+        }
+        count++;
+
+        // the stash is scanned by every lookup of the key, so stashed keys with its hash code count as probed
+        if (missComparisons > maxProbeLength) {
+            reseed(missComparisons);
+        }
+        return true;
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        int pos = find(hashCodeComputer.hashCode(key), key);
+
+        if (pos == NULL) {
+            return null;
+        }
+        DataPayload entry = entryAt(pos);
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        assert entryAt(entry.getInCachePosition()) == entry;
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length + stashCount) ? entryAt(slot) : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return entries.length;
+    }
+
+    @Override
+    public int size () {
+        return count;
+    }
+}
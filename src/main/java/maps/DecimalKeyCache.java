@@ -0,0 +1,145 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+
+import static internal.UnsafeAccess.UNSAFE;
+
+/**
+ * Routes keys that are canonical non-negative decimal numbers (like the ones of {@code NumberKeyNamingStrategy})
+ * to a {@link LongCache}, where they are stored, hashed and compared as a single long. All other keys go to a regular {@link Cache}.
+ * <p>
+ * Inactive entries of both kinds share one queue of maxInactiveDataCount entries, kept by this adapter:
+ * an evicted entry is removed from the cache of its kind. Each inner cache starts at half the size and grows on demand.
+ */
+public class DecimalKeyCache implements Cache {
+    public static final int MAX_DECIMAL_KEY_LENGTH = 18; // any 18 digit number fits into long
+    protected static final long NOT_DECIMAL = -1;
+
+    protected final LongCache decimalKeys;
+    protected final Cache otherKeys;
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    public DecimalKeyCache(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        // inner caches never deactivate entries themselves, maxInactiveDataCount only sizes their tables
+        this(new LongLinearProbingHashMap(activeDataCount / 2, Math.max(1, maxInactiveDataCount / 2), hashCodeComputer),
+                new LinearProbingHashMap(activeDataCount / 2, Math.max(1, maxInactiveDataCount / 2), hashCodeComputer),
+                maxInactiveDataCount);
+    }
+
+    /** Both caches must support {@link Cache#remove}: entries evicted from the shared queue are removed through it */
+    public DecimalKeyCache(LongCache decimalKeys, Cache otherKeys, int maxInactiveDataCount) {
+        this.decimalKeys = decimalKeys;
+        this.otherKeys = otherKeys;
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+    }
+
+    /**
+     * @return value of the key or {@link #NOT_DECIMAL} when the key is not 1 to 18 digits without leading zeros
+     *         (leading zeros are rejected, so "007" and "7" are never the same long key)
+     */
+    public static long parseDecimalKey(AsciiString key) {
+        final int length = key.getLength();
+        if (length == 0 || length > MAX_DECIMAL_KEY_LENGTH) {
+            return NOT_DECIMAL;
+        }
+
+        final byte[] array = key.getArray();
+        final long address = key.getAddress();
+        if (length > 1 && UNSAFE.getByte(array, address) == '0') {
+            return NOT_DECIMAL;
+        }
+
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = UNSAFE.getByte(array, address + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_DECIMAL;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        long decimal = parseDecimalKey(entry.getKey());
+        if (decimal != NOT_DECIMAL) {
+            return decimalKeys.putIfEmpty(decimal, entry);
+        }
+        return otherKeys.putIfEmpty(entry);
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        long decimal = parseDecimalKey(key);
+        DataPayload entry = (decimal != NOT_DECIMAL) ? decimalKeys.get(decimal) : otherKeys.get(key);
+        if (entry != null) {
+            inactiveDataQueue.recordAccess(entry);
+        }
+        return entry;
+    }
+
+    private void evict(DataPayload entry) {
+        if (parseDecimalKey(entry.getKey()) != NOT_DECIMAL) {
+            decimalKeys.remove(entry);
+        } else {
+            otherKeys.remove(entry);
+        }
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            evict(evicted);
+        }
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            evict(entry);
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        decimalKeys.setProbeLengthGuard(maxProbeLength, listener);
+        otherKeys.setProbeLengthGuard(maxProbeLength, listener);
+    }
+
+    @Override
+    public int capacity() {
+        return decimalKeys.capacity() + otherKeys.capacity();
+    }
+
+    @Override
+    public int size() {
+        return decimalKeys.size() + otherKeys.size();
+    }
+}
@@ -0,0 +1,46 @@
+package maps;
+
+import internal.DataPayload;
+
+/**
+ * Issues entry handles of a map: generation in the high half, slot in the low half.
+ * <p>
+ * Every issued handle gets a new generation which is also stored in the entry, so a handle matches
+ * only the very entry it was issued for and only while the entry stays in the slot.
+ * Generation {@link #NO_GENERATION} marks entries without a handle: maps reset it when they free an entry,
+ * so neither a plain re-insert of the same entry nor another entry reusing the slot matches an old handle.
+ * {@link #invalidateAll()} makes all handles issued so far stale (table resize).
+ */
+final class EntryHandles {
+    static final int NO_GENERATION = 0;
+
+    private int nextGeneration = NO_GENERATION + 1;
+    private int firstValidGeneration = nextGeneration;
+
+    long issue(DataPayload entry) {
+        int generation = nextGeneration++;
+        if (generation == NO_GENERATION) { // wrapped around
+            generation = nextGeneration++;
+        }
+        entry.setHandleGeneration(generation);
+        return ((long) generation << 32) | entry.getInCachePosition();
+    }
+
+    void invalidateAll() {
+        firstValidGeneration = nextGeneration;
+    }
+
+    static int slotOf(long handle) {
+        return (int) handle;
+    }
+
+    /** @param entry entry in the slot of the handle, may be null */
+    boolean matches(DataPayload entry, long handle) {
+        final int generation = (int) (handle >>> 32);
+        return entry != null
+                && generation != NO_GENERATION
+                && entry.getHandleGeneration() == generation
+                && entry.getInCachePosition() == slotOf(handle)
+                && generation - firstValidGeneration >= 0; // wraps around after 2^31 handles
+    }
+}
@@ -0,0 +1,267 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import hashing.HashCodeComputerSelector;
+import hashing.MetroHashCodeComputer;
+import hashing.NativeHashCodeComputer;
+import hashing.UnrolledDefaultHashCodeComputer;
+import hashing.XxHashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+
+import java.util.function.Function;
+
+/**
+ * Cache which picks its hash code computer from the keys it actually gets, see {@link HashCodeComputerSelector}.
+ * <p>
+ * It starts with the first candidate and samples the first {@code sampleSize} inserted entries. Then the selector
+ * runs once on the sampled keys, and when another candidate wins, the entries move to a cache built with it:
+ * the one rehash. Inactive entries stay inactive in the same eviction order (and since the same times, when the clock
+ * is driven by {@link #tick}). Access history does not move: {@link internal.TinyLfuEvictionPolicy} frequencies start over,
+ * and entries accessed by handles issued before the move have to be looked up by key again.
+ * <p>
+ * Not thread safe, like the caches it wraps. The sampling bookkeeping is linear in the sample size per deactivation,
+ * and it is dropped after the selection.
+ */
+public class HashSelectingCache implements Cache {
+    public static final int DEFAULT_SAMPLE_SIZE = 4096;
+    public static final long DEFAULT_SELECTION_BUDGET_NANOS = 20_000_000;
+
+    /** README winners first: unrolledDefault for number and fixed_prefix keys, nativeHash for UUIDs */
+    public static final HashCodeComputer[] DEFAULT_CANDIDATES = {
+            UnrolledDefaultHashCodeComputer.INSTANCE,
+            NativeHashCodeComputer.INSTANCE,
+            XxHashCodeComputer.INSTANCE,
+            MetroHashCodeComputer.INSTANCE
+    };
+
+    protected final Function<HashCodeComputer, Cache> cacheFactory;
+    protected final HashCodeComputerSelector selector;
+
+    protected Cache cache;
+    protected HashCodeComputer hashCodeComputer;
+
+    // sampling state, null after the selection
+    protected DataPayload[] sample;
+    protected int sampled;
+    protected DataPayload[] inactive; // in deactivation order
+    protected long[] inactiveSince;
+    protected int inactiveCount;
+
+    // what the replacement cache has to repeat
+    protected EvictionPolicy.Factory policyFactory;
+    protected boolean ttlSet;
+    protected long ttlNanos;
+    protected boolean ticked;
+    protected long nowNanos;
+    protected int maxProbeLength;
+    protected ReseedListener reseedListener;
+
+    public HashSelectingCache(Function<HashCodeComputer, Cache> cacheFactory) {
+        this(cacheFactory, DEFAULT_CANDIDATES, DEFAULT_SAMPLE_SIZE, DEFAULT_SELECTION_BUDGET_NANOS);
+    }
+
+    public HashSelectingCache(Function<HashCodeComputer, Cache> cacheFactory, HashCodeComputer[] candidates, int sampleSize, long selectionBudgetNanos) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("sampleSize must be positive");
+        }
+
+        this.cacheFactory = cacheFactory;
+        this.selector = new HashCodeComputerSelector(candidates, selectionBudgetNanos);
+        this.hashCodeComputer = candidates[0];
+        this.cache = cacheFactory.apply(hashCodeComputer);
+
+        sample = new DataPayload[sampleSize];
+        inactive = new DataPayload[sampleSize]; // only sampled entries can be inactive while sampling
+        inactiveSince = new long[sampleSize];
+    }
+
+    public HashCodeComputer getHashCodeComputer() {
+        return hashCodeComputer;
+    }
+
+    /**
+     * Selects the hash code computer now, on the keys sampled so far. Call it at the end of the startup
+     * when fewer than sampleSize entries may come.
+     * @return the selected computer; after the selection it never changes
+     */
+    public HashCodeComputer selectHashCodeComputer() {
+        if (sample == null) {
+            return hashCodeComputer;
+        }
+
+        AsciiString[] keys = new AsciiString[sampled];
+        for (int i = 0; i < sampled; i++) {
+            keys[i] = sample[i].getKey();
+        }
+        HashCodeComputer selected = selector.select(keys, sampled);
+        if (selected != hashCodeComputer) {
+            rehash(selected);
+        }
+
+        sample = null;
+        inactive = null;
+        inactiveSince = null;
+        return hashCodeComputer;
+    }
+
+    // every entry in the cache has been sampled, so the sample is the whole content
+    private void rehash(HashCodeComputer selected) {
+        Cache rehashed = cacheFactory.apply(selected);
+        if (policyFactory != null) {
+            rehashed.setEvictionPolicy(policyFactory);
+        }
+        if (ttlSet) {
+            rehashed.setInactiveTtl(ttlNanos);
+        }
+        if (maxProbeLength > 0) {
+            rehashed.setProbeLengthGuard(maxProbeLength, reseedListener);
+        }
+
+        for (int i = 0; i < sampled; i++) {
+            DataPayload entry = sample[i];
+            if (cache.get(entry.getKey()) == entry) {
+                rehashed.putIfEmpty(entry); // false for an entry put again after its eviction
+            }
+        }
+        for (int i = 0; i < inactiveCount; i++) {
+            DataPayload entry = inactive[i]; // unlinked from the old eviction order first
+            if (!cache.reactivate(entry)) {
+                continue; // evicted or expired
+            }
+            if (ticked) {
+                rehashed.deactivate(entry, inactiveSince[i]);
+            } else {
+                rehashed.deactivate(entry);
+            }
+        }
+        if (ticked) {
+            rehashed.tick(nowNanos);
+        }
+
+        cache = rehashed;
+        hashCodeComputer = selected;
+    }
+
+    private void sampleInsert(DataPayload entry) {
+        forgetInactive(entry); // it was evicted
+        sample[sampled++] = entry;
+        if (sampled == sample.length) {
+            selectHashCodeComputer();
+        }
+    }
+
+    private boolean forgetInactive(DataPayload entry) {
+        for (int i = 0; i < inactiveCount; i++) {
+            if (inactive[i] == entry) {
+                inactiveCount--;
+                System.arraycopy(inactive, i + 1, inactive, i, inactiveCount - i);
+                System.arraycopy(inactiveSince, i + 1, inactiveSince, i, inactiveCount - i);
+                inactive[inactiveCount] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        boolean added = cache.putIfEmpty(entry);
+        if (added && sample != null) {
+            sampleInsert(entry);
+        }
+        return added;
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        long handle = cache.putIfEmptyWithHandle(entry);
+        if (handle != NO_HANDLE && sample != null) {
+            sampleInsert(entry);
+        }
+        return handle;
+    }
+
+    @Override
+    public void putAllIfEmpty(DataPayload[] entries, int n, boolean[] out) {
+        if (sample != null) {
+            Cache.super.putAllIfEmpty(entries, n, out);
+        } else {
+            cache.putAllIfEmpty(entries, n, out);
+        }
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public void getAll(AsciiString[] keys, int n, DataPayload[] out) {
+        cache.getAll(keys, n, out);
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        return cache.getByHandle(handle);
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        cache.deactivate(entry);
+        if (sample != null) {
+            forgetInactive(entry);
+            inactive[inactiveCount] = entry;
+            inactiveSince[inactiveCount] = nowNanos;
+            inactiveCount++;
+        }
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        boolean reactivated = cache.reactivate(entry);
+        if (reactivated && sample != null) {
+            forgetInactive(entry);
+        }
+        return reactivated;
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = cache.tick(nowNanos);
+        ticked = true;
+        this.nowNanos = Math.max(this.nowNanos, nowNanos);
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        cache.setInactiveTtl(ttlNanos);
+        this.ttlSet = true;
+        this.ttlNanos = ttlNanos;
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        cache.setEvictionPolicy(policyFactory);
+        this.policyFactory = policyFactory;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        cache.setProbeLengthGuard(maxProbeLength, listener);
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return cache.capacity();
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,408 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hopscotch hash map: an entry always lives within {@link #NEIGHBOURHOOD} slots from its home slot.
+ * <p>
+ * Every home slot keeps a hop-info bitmap of the neighbourhood slots holding its entries, so a lookup checks
+ * those slots only and a miss costs a single bitmap read. Insert finds the nearest empty slot by linear probing
+ * and hops it back towards the home slot, moving entries forward within their own neighbourhoods.
+ * This keeps lookups short at load factors of 80-90%, where linear probing runs grow long.
+ * <p>
+ * An entry which cannot be brought into its neighbourhood goes to a small stash, and when the stash is full the table grows.
+ * The stash outgrows {@link #STASH_SIZE} only when growing does not help (keys with equal hash codes).
+ * Stashed entries have {@code capacity() + stashIndex} as in-cache position and move back into the table
+ * as soon as a slot of their neighbourhood is freed.
+ */
+public class HopscotchHashMap implements Cache {
+    public static final int NEIGHBOURHOOD = 64; // bits of hop info
+    public static final int MIN_CAPACITY = NEIGHBOURHOOD / 2; // so that the table covers a whole neighbourhood
+    public static final float DEFAULT_LOAD_FACTOR = 0.9f;
+    public static final int STASH_SIZE = 4;
+    protected static final int NULL = Integer.MIN_VALUE;
+
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
+    protected final float loadFactor;
+
+    protected int count = 0;
+
+    protected DataPayload[] entries;
+    protected long[] hopInfo; // bit i of hopInfo[home] is set when slot home + i holds an entry of that home slot
+    protected int threshold;
+
+    protected DataPayload[] stash = new DataPayload[STASH_SIZE];
+    protected int[] stashHashCodes = new int[STASH_SIZE];
+    protected int stashCount;
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+    protected int missComparisons; // keys compared by the last find which did not find its key
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
+
+    public HopscotchHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR);
+    }
+
+    public HopscotchHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor) {
+        if (activeDataCount < MIN_CAPACITY)
+            activeDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (loadFactor <= 0 || loadFactor > 1) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 1");
+        }
+
+        this.loadFactor = loadFactor;
+
+        int totalCacheSize;
+        if (maxInactiveDataCount < activeDataCount) {
+            totalCacheSize = activeDataCount * 2;
+        } else {
+            totalCacheSize = maxInactiveDataCount * 2;
+        }
+
+        allocTable(totalCacheSize);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+        this.hashCodeComputer = hashCodeComputer;
+    }
+
+    protected void allocTable(int cap) {
+        entries = new DataPayload[cap];
+        hopInfo = new long[cap];
+        threshold = (int)(cap * loadFactor);
+    }
+
+    protected void resizeTable(int newSize) {
+        handles.invalidateAll();
+        final DataPayload[] saveOrders = entries;
+        final DataPayload[] saveStash = stash;
+        final int[] saveStashHashCodes = stashHashCodes;
+        final int saveStashCount = stashCount;
+
+        allocTable(newSize);
+        stash = new DataPayload[STASH_SIZE];
+        stashHashCodes = new int[STASH_SIZE];
+        stashCount = 0;
+
+        for (DataPayload entry : saveOrders) {
+            if (entry != null) {
+                int hash = hashCodeComputer.hashCode(entry.getKey());
+                if (!place(entry, indexFor(hash))) {
+                    putInStash(entry, hash);
+                }
+            }
+        }
+        for (int i = 0; i < saveStashCount; i++) {
+            if (!place(saveStash[i], indexFor(saveStashHashCodes[i]))) {
+                putInStash(saveStash[i], saveStashHashCodes[i]);
+            }
+        }
+    }
+
+    /** Rebuilds the table at the same size with a new seed */
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        for (int i = 0; i < stashCount; i++) {
+            stashHashCodes[i] = hashCodeComputer.hashCode(stash[i].getKey());
+        }
+        resizeTable(entries.length);
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    protected boolean keyEquals(AsciiString a, AsciiString b) {
+        if (a == null) {
+            return b == null;
+        }
+        return a.equals(b);
+    }
+
+    protected int hashIndex(AsciiString key) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(key, entries.length));
+    }
+
+    protected int indexFor(int hash) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(hash, entries.length));
+    }
+
+    protected int find(int hash, AsciiString key) {
+        final int home = indexFor(hash);
+        final int lengthMask = entries.length - 1;
+        for (long hops = hopInfo[home]; hops != 0; hops &= hops - 1) {
+            int idx = (home + Long.numberOfTrailingZeros(hops)) & lengthMask;
+            if (keyEquals(entries[idx].getKey(), key)) {
+                return idx;
+            }
+        }
+
+        int compared = Long.bitCount(hopInfo[home]);
+        for (int i = 0; i < stashCount; i++) {
+            if (stashHashCodes[i] == hash) {
+                if (keyEquals(stash[i].getKey(), key)) {
+                    return entries.length + i;
+                }
+                compared++;
+            }
+        }
+        missComparisons = compared;
+        return NULL;
+    }
+
+    protected DataPayload entryAt(int pos) {
+        return pos < entries.length ? entries[pos] : stash[pos - entries.length];
+    }
+
+    /** @return false when no empty slot can be brought into the neighbourhood of the home slot */
+    protected boolean place(DataPayload entry, int home) {
+        final int lengthMask = entries.length - 1;
+        int free = home;
+        int distance = 0;
+        while (entries[free] != null) {
+            if (++distance == entries.length) {
+                return false;
+            }
+            free = (free + 1) & lengthMask;
+        }
+
+        while (distance >= NEIGHBOURHOOD) {
+            int moved = hopBack(free);
+            if (moved == NULL) {
+                return false;
+            }
+            distance -= (free - moved) & lengthMask;
+            free = moved;
+        }
+
+        entries[free] = entry;
+        entry.setInCachePosition(free);
+        hopInfo[home] |= 1L << distance;
+        return true;
+    }
+
+    /**
+     * Moves the entry closest to its home slot among the ones preceding the empty slot into it.
+     * @return slot freed by the move, or NULL when none of the entries may move there
+     */
+    private int hopBack(int free) {
+        final int lengthMask = entries.length - 1;
+        for (int distance = NEIGHBOURHOOD - 1; distance > 0; distance--) {
+            int home = (free - distance) & lengthMask;
+            long hops = hopInfo[home] & ((1L << distance) - 1); // entries of the home slot placed before the empty slot
+            if (hops != 0) {
+                int hop = Long.numberOfTrailingZeros(hops);
+                int from = (home + hop) & lengthMask;
+                entries[free] = entries[from];
+                entries[free].setInCachePosition(free);
+                entries[from] = null;
+                hopInfo[home] ^= (1L << hop) | (1L << distance);
+                return from;
+            }
+        }
+        return NULL;
+    }
+
+    /**
+     * Growing the table does not help the key when its whole neighbourhood is taken by keys with the same hash code:
+     * they share the home slot at any capacity.
+     */
+    private boolean neighbourhoodHoldsHashCode(int hash) {
+        final int home = indexFor(hash);
+        if (hopInfo[home] != -1L) {
+            return false;
+        }
+        final int lengthMask = entries.length - 1;
+        for (int i = 0; i < NEIGHBOURHOOD; i++) {
+            if (hashCodeComputer.hashCode(entries[(home + i) & lengthMask].getKey()) != hash) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void putInStash(DataPayload entry, int hash) {
+        if (stashCount == stash.length) {
+            stash = Arrays.copyOf(stash, stashCount * 2);
+            stashHashCodes = Arrays.copyOf(stashHashCodes, stashCount * 2);
+        }
+        stash[stashCount] = entry;
+        stashHashCodes[stashCount] = hash;
+        entry.setInCachePosition(entries.length + stashCount);
+        stashCount++;
+    }
+
+    protected void free(int pos) {
+        count--;
+        DataPayload entry = entryAt(pos);
+        entry.setInCachePosition(-1);
+        entry.setHandleGeneration(EntryHandles.NO_GENERATION);
+
+        if (pos >= entries.length) {
+            removeFromStash(pos - entries.length);
+            return;
+        }
+
+        final int lengthMask = entries.length - 1;
+        int home = hashIndex(entry.getKey());
+        hopInfo[home] &= ~(1L << ((pos - home) & lengthMask));
+        entries[pos] = null;
+
+        if (stashCount > 0) {
+            unstash(pos);
+        }
+    }
+
+    private void removeFromStash(int stashIdx) {
+        stashCount--;
+        if (stashIdx != stashCount) {
+            stash[stashIdx] = stash[stashCount];
+            stashHashCodes[stashIdx] = stashHashCodes[stashCount];
+            stash[stashIdx].setInCachePosition(entries.length + stashIdx);
+        }
+        stash[stashCount] = null;
+    }
+
+    // moves a stashed entry into the freed slot when it is within the entry's neighbourhood
+    private void unstash(int freed) {
+        final int lengthMask = entries.length - 1;
+        for (int i = 0; i < stashCount; i++) {
+            DataPayload entry = stash[i];
+            int home = indexFor(stashHashCodes[i]);
+            int distance = (freed - home) & lengthMask;
+            if (distance < NEIGHBOURHOOD) {
+                removeFromStash(i);
+                entries[freed] = entry;
+                entry.setInCachePosition(freed);
+                hopInfo[home] |= 1L << distance;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        if (count >= threshold) {
+            resizeTable(entries.length * 2);
+        }
+
+        AsciiString key = entry.getKey();
+        int hash = hashCodeComputer.hashCode(key);
+        if (find(hash, key) != NULL) {
+            return false;
+        }
+
+        boolean placed = place(entry, indexFor(hash));
+        if (!placed && stashCount >= STASH_SIZE && !neighbourhoodHoldsHashCode(hash)) {
+            resizeTable(entries.length * 2);
+            placed = place(entry, indexFor(hash));
+        }
+        if (!placed) {
+            putInStash(entry, hash);
+        }
+        count++;
+
+        // the stash is scanned by every lookup of the key, so stashed keys with its hash code count as probed
+        if (missComparisons > maxProbeLength) {
+            reseed(missComparisons);
+        }
+        return true;
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        int pos = find(hashCodeComputer.hashCode(key), key);
+
+        if (pos == NULL) {
+            return null;
+        }
+        DataPayload entry = entryAt(pos);
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        assert entryAt(entry.getInCachePosition()) == entry;
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length + stashCount) ? entryAt(slot) : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return entries.length;
+    }
+
+    @Override
+    public int size () {
+        return count;
+    }
+}
@@ -0,0 +1,350 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * Linear probing map which keeps short keys inside the table: every slot has two long words,
+ * so a 7-bit ASCII key of up to {@link #MAX_INLINE_KEY_LENGTH} bytes is compared with two long compares
+ * without touching the key bytes of the stored entry.
+ * <p>
+ * Word layout of an inline key: little-endian key bytes padded with zeros. The top bit of every byte is free (ASCII):
+ * bit 7 of the first word marks a filled slot, top bits of bytes 3..7 of the second word hold the key length.
+ * Longer or non-ASCII keys take the overflow path: first word is {@link #OVERFLOW}, second one is the key hash code,
+ * and keys are compared as usual once the hash codes match.
+ */
+public class InlineKeyLinearProbingHashMap implements Cache {
+    public static final int MIN_CAPACITY = 16;
+    public static final float DEFAULT_LOAD_FACTOR = 0.5f;
+    public static final int MAX_INLINE_KEY_LENGTH = 16;
+    protected static final int NULL = Integer.MIN_VALUE;
+
+    protected static final long EMPTY = 0;
+    protected static final long OVERFLOW = -1;
+    private static final long FILLED_BIT = 0x80;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long[] LENGTH_BITS = new long[MAX_INLINE_KEY_LENGTH + 1];
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    static {
+        for (int length = 0; length <= MAX_INLINE_KEY_LENGTH; length++) {
+            for (int bit = 0; bit < 5; bit++) {
+                LENGTH_BITS[length] |= (long) ((length >>> bit) & 1) << (31 + 8 * bit);
+            }
+        }
+    }
+
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
+    protected final float loadFactor;
+
+    protected int count = 0;
+
+    protected long[] words; // two words per slot
+    protected DataPayload[] entries;
+    protected int threshold;
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
+
+    // words of the key being looked up, to avoid allocation (the map is single-threaded)
+    private long probeWord0;
+    private long probeWord1;
+
+    public InlineKeyLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR);
+    }
+
+    public InlineKeyLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor) {
+        if (activeDataCount < MIN_CAPACITY)
+            activeDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (loadFactor <= 0 || loadFactor > 100) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 100");
+        }
+
+        this.loadFactor = loadFactor;
+
+        int totalCacheSize;
+        if (maxInactiveDataCount < activeDataCount) {
+            totalCacheSize = activeDataCount * 2;
+        } else {
+            totalCacheSize = maxInactiveDataCount * 2;
+        }
+
+        allocTable(totalCacheSize);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+        this.hashCodeComputer = hashCodeComputer;
+    }
+
+    // length bytes of array starting at from, little-endian
+    private static long loadWord(byte[] array, int from, int length) {
+        if (from + Long.BYTES <= array.length) {
+            long word = (long) LONG_LE.get(array, from);
+            return length == Long.BYTES ? word : word & ((1L << (length << 3)) - 1);
+        }
+
+        long word = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            word = (word << 8) | (array[from + i] & 0xFF);
+        }
+        return word;
+    }
+
+    /** Fills probeWord0/probeWord1 with the slot words of the key */
+    private void encode(AsciiString key, int hash) {
+        final int length = key.getLength();
+        if (length <= MAX_INLINE_KEY_LENGTH) {
+            final byte[] array = key.getArray();
+            final int offset = (int) (key.getAddress() - ARRAY_BYTE_BASE_OFFSET);
+            long word0 = length > 0 ? loadWord(array, offset, Math.min(length, Long.BYTES)) : 0;
+            long word1 = length > Long.BYTES ? loadWord(array, offset + Long.BYTES, length - Long.BYTES) : 0;
+
+            if (((word0 | word1) & HIGH_BITS) == 0) {
+                probeWord0 = word0 | FILLED_BIT;
+                probeWord1 = word1 | LENGTH_BITS[length];
+                return;
+            }
+        }
+
+        probeWord0 = OVERFLOW;
+        probeWord1 = hash;
+    }
+
+    protected void allocTable(int cap) {
+        words = new long[2 * cap];
+        entries = new DataPayload[cap];
+        threshold = (int)(cap * loadFactor);
+    }
+
+    protected void resizeTable(int newSize) {
+        handles.invalidateAll();
+        final int curLength = entries.length;
+        final long[] saveWords = words;
+        final DataPayload[] saveOrders = entries;
+
+        allocTable(newSize);
+        count = 0;
+
+        for (int i = 0; i < curLength; i++) {
+            if (saveOrders[i] != null) {
+                final int hash = hashCodeComputer.hashCode(saveOrders[i].getKey());
+                final long word0 = saveWords[2 * i];
+                final long word1 = (word0 == OVERFLOW) ? hash : saveWords[2 * i + 1]; // the hash code changes on re-seed
+                putEntry(saveOrders[i], word0, word1, indexFor(hash));
+            }
+        }
+    }
+
+    /** Rebuilds the table at the same size with a new seed */
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        resizeTable(entries.length);
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    protected final boolean isFilled(int idx) {
+        return (words[2 * idx] != EMPTY);
+    }
+
+    protected final boolean isEmpty(int idx) {
+        return (words[2 * idx] == EMPTY);
+    }
+
+    protected void free(int idx) {
+        count--;
+        entries[idx].setInCachePosition(-1);
+        entries[idx].setHandleGeneration(EntryHandles.NO_GENERATION);
+        entries[idx] = null;
+        words[2 * idx] = EMPTY;
+
+        compactChain(idx);
+    }
+
+    private void compactChain(int deletedIdx) {
+        int curIdx = deletedIdx;
+        int lengthMask = entries.length - 1;
+
+        while (true) {
+            curIdx = (curIdx + 1) & lengthMask;
+            if (isEmpty(curIdx)) {
+                break;
+            }
+
+            DataPayload entry = entries[curIdx];
+            int hidx = hashIndex(entry.getKey());
+            if ((curIdx < hidx && (hidx <= deletedIdx || deletedIdx <= curIdx)) ||
+                    (hidx <= deletedIdx && deletedIdx <= curIdx)) {
+                words[2 * deletedIdx] = words[2 * curIdx];
+                words[2 * deletedIdx + 1] = words[2 * curIdx + 1];
+                entries[deletedIdx] = entry;
+                words[2 * curIdx] = EMPTY;
+                entries[curIdx] = null;
+                entry.setInCachePosition(deletedIdx);
+                deletedIdx = curIdx;
+            }
+        }
+    }
+
+    // expects probeWord0/probeWord1 to be filled for the key
+    private int find(int hidx, AsciiString key) {
+        final long word0 = probeWord0;
+        final long word1 = probeWord1;
+        final int lengthMask = entries.length - 1;
+        for (; isFilled(hidx); hidx = (hidx + 1) & lengthMask) {
+            if (words[2 * hidx] == word0 && words[2 * hidx + 1] == word1 &&
+                    (word0 != OVERFLOW || entries[hidx].getKey().equals(key))) {
+                return hidx;
+            }
+        }
+        return NULL;
+    }
+
+    protected int hashIndex(AsciiString key) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(key, entries.length));
+    }
+
+    protected int indexFor(int hash) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(hash, entries.length));
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        if (count >= threshold) {
+            resizeTable(entries.length * 2);
+        }
+
+        AsciiString key = entry.getKey();
+        int hash = hashCodeComputer.hashCode(key);
+        encode(key, hash);
+        int hidx = indexFor(hash);
+        if (find(hidx, key) != NULL) {
+            return false;
+        }
+
+        putEntry(entry, probeWord0, probeWord1, hidx);
+
+        final int probeLength = (entry.getInCachePosition() - hidx) & (entries.length - 1);
+        if (probeLength > maxProbeLength) {
+            reseed(probeLength);
+        }
+        return true;
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        int hash = hashCodeComputer.hashCode(key);
+        encode(key, hash);
+        int pos = find(indexFor(hash), key);
+
+        if (pos == NULL) {
+            return null;
+        }
+        DataPayload entry = entries[pos];
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    protected void putEntry(DataPayload entry, long word0, long word1, int hidx) {
+        int lengthMask = entries.length - 1;
+        while (isFilled(hidx)) {
+            hidx = (hidx + 1) & lengthMask;
+        }
+        count++;
+        words[2 * hidx] = word0;
+        words[2 * hidx + 1] = word1;
+        entries[hidx] = entry;
+        entry.setInCachePosition(hidx);
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        assert entries[entry.getInCachePosition()] == entry;
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length) ? entries[slot] : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return entries.length;
+    }
+
+    @Override
+    public int size () {
+        return count;
+    }
+}
@@ -3,7 +3,8 @@ package maps;
 import hashing.HashCodeComputer;
 import internal.AsciiString;
 import internal.DataPayload;
-import internal.FixedSizeQueue;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
 
 import java.util.HashMap;
 
@@ -12,7 +13,7 @@ public class JavaHashMap implements Cache {
 
     private final HashMap<AsciiString, DataPayload> map;
 
-    private final FixedSizeQueue<DataPayload> inactiveDataQueue;
+    private EvictionPolicy inactiveDataQueue;
 
     public JavaHashMap(int initialActiveDataCount, int maxInactiveDataCount) {
         if (initialActiveDataCount < MIN_CAPACITY)
@@ -23,7 +24,7 @@ public class JavaHashMap implements Cache {
         }
 
         this.map = new HashMap<>(initialActiveDataCount);
-        this.inactiveDataQueue = new FixedSizeQueue<>(maxInactiveDataCount);
+        this.inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
     }
 
     @Override
@@ -36,15 +37,46 @@ public class JavaHashMap implements Cache {
 
     @Override
     public DataPayload get(AsciiString key) {
-        return map.get(key);
+        DataPayload entry = map.get(key);
+        if (entry != null) {
+            inactiveDataQueue.recordAccess(entry);
+        }
+        return entry;
     }
 
     @Override
     public void deactivate(DataPayload entry) {
-        if (inactiveDataQueue.isFull()) {
-            map.remove(inactiveDataQueue.take().getKey());
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            map.remove(evicted.getKey());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            map.remove(entry.getKey());
         }
-        inactiveDataQueue.put(entry);
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
     }
 
     @Override
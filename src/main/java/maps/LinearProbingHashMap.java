@@ -3,27 +3,67 @@ package maps;
 import hashing.HashCodeComputer;
 import internal.AsciiString;
 import internal.DataPayload;
-import internal.FixedSizeQueue;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+
+import java.util.concurrent.ThreadLocalRandom;
 
 public class LinearProbingHashMap implements Cache {
     public static final int MIN_CAPACITY = 16;
     public static final float DEFAULT_LOAD_FACTOR = 0.5f;
+    public static final int MIGRATION_BATCH_SIZE = 64; // old table slots visited per operation during incremental resize
     protected static final int NULL = Integer.MIN_VALUE;
-    protected final HashCodeComputer hashCodeComputer;
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
     protected final float loadFactor;
+    protected final boolean incrementalResize;
+    protected final boolean cacheHashCodes;
 
     protected int count = 0;
 
     protected DataPayload[] entries;
+    protected int[] hashCodes; // full hash code of every stored key, allocated only when cacheHashCodes is set
     protected int threshold;
 
-    protected final FixedSizeQueue<DataPayload> inactiveDataQueue; // contains most recent inactive orders
+    // incremental resize: the previous table stays alive until all its entries are moved into the current one
+    protected DataPayload[] oldEntries; // not null while migration is in progress
+    protected int[] oldHashCodes;
+    protected HashCodeComputer oldHashCodeComputer;
+    protected int migrationIdx;         // all old table slots below it are empty
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
+
+    private int[] batchHashes = new int[0]; // scratch of getAll/putAllIfEmpty (the map is single-threaded)
+    private int batchSink;                  // keeps the loads of touchHomeSlots alive
 
     public LinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
         this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR);
     }
 
     public LinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, loadFactor, false);
+    }
+
+    /**
+     * @param incrementalResize when true, growing the table does not rehash it inside a single putIfEmpty:
+     *                          the old table is kept and every following operation moves at most
+     *                          {@link #MIGRATION_BATCH_SIZE} of its slots into the new one
+     */
+    public LinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor, boolean incrementalResize) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, loadFactor, incrementalResize, false);
+    }
+
+    /**
+     * @param cacheHashCodes when true, the hash code of every key is kept next to its entry:
+     *                       probing compares hash codes before keys, and compaction and resize
+     *                       reposition entries without hashing their keys again
+     */
+    public LinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor,
+                                boolean incrementalResize, boolean cacheHashCodes) {
         if (activeDataCount < MIN_CAPACITY)
             activeDataCount = MIN_CAPACITY;
 
@@ -36,6 +76,8 @@ public class LinearProbingHashMap implements Cache {
         }
 
         this.loadFactor = loadFactor;
+        this.incrementalResize = incrementalResize;
+        this.cacheHashCodes = cacheHashCodes;
 
         int totalCacheSize;
         if (maxInactiveDataCount < activeDataCount) {
@@ -45,28 +87,138 @@ public class LinearProbingHashMap implements Cache {
         }
 
         allocTable(totalCacheSize);
-        inactiveDataQueue = new FixedSizeQueue<>(maxInactiveDataCount);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
         this.hashCodeComputer = hashCodeComputer;
     }
 
     protected void allocTable(int cap) {
         entries = new DataPayload[cap];
+        if (cacheHashCodes) {
+            hashCodes = new int[cap];
+        }
         threshold = (int)(cap * loadFactor);
     }
 
     protected void resizeTable(int newSize) {
+        if (incrementalResize) {
+            startMigration(newSize);
+            return;
+        }
+
+        handles.invalidateAll();
+        if (oldEntries != null) {
+            migrate(Integer.MAX_VALUE); // a re-seed is in progress
+        }
+
         final int curLength = entries.length;
         final DataPayload[] saveOrders = entries;
+        final int[] saveHashCodes = hashCodes;
 
         allocTable(newSize);
         count = 0;
 
         for (int i = 0; i < curLength; i++) {
             if (saveOrders[i] != null) {
-                int hidx = hashIndex(saveOrders[i].getKey());
+                if (cacheHashCodes) {
+                    int hash = saveHashCodes[i];
+                    putEntry(saveOrders[i], indexFor(hash), hash);
+                } else {
+                    int hidx = hashIndex(saveOrders[i].getKey());
+
+                    putEntry(saveOrders[i], hidx);
+                }
+            }
+        }
+    }
 
-                putEntry(saveOrders[i], hidx);
+    protected void startMigration(int newSize) {
+        handles.invalidateAll();
+        if (oldEntries != null) {
+            migrate(Integer.MAX_VALUE); // previous resize must be completed first
+        }
+
+        oldEntries = entries;
+        oldHashCodes = hashCodes;
+        oldHashCodeComputer = hashCodeComputer;
+        migrationIdx = 0;
+        allocTable(newSize);
+    }
+
+    /** Moves all entries into a table of the same size hashed with a new seed, the same way an incremental resize does */
+    protected void reseed(int probeLength) {
+        startMigration(entries.length);
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    /**
+     * Moves entries from the old table into the current one, visiting at most maxSlots old table slots.
+     * Entries are removed from the old table with the regular backward-shift deletion, so the old table
+     * stays a valid linear probing table and can be searched at any moment.
+     */
+    protected void migrate(int maxSlots) {
+        final DataPayload[] old = oldEntries;
+
+        for (int visited = 0; visited < maxSlots && migrationIdx < old.length; visited++) {
+            DataPayload entry = old[migrationIdx];
+            if (entry == null) {
+                migrationIdx++;
+                continue;
             }
+
+            if (cacheHashCodes) {
+                int hash = (oldHashCodeComputer == hashCodeComputer) ? oldHashCodes[migrationIdx] : hashCodeComputer.hashCode(entry.getKey());
+                freeInOldTable(migrationIdx); // compaction may move next chain entry into migrationIdx
+                putEntry(entry, indexFor(hash), hash);
+            } else {
+                freeInOldTable(migrationIdx);
+                putEntry(entry, hashIndex(entry.getKey()));
+            }
+        }
+
+        if (migrationIdx == old.length) {
+            oldEntries = null;
+            oldHashCodes = null;
+            oldHashCodeComputer = null;
+        }
+    }
+
+    // Old table is handled by the same code as the current one: swap them for the duration of the call
+    private void swapTables() {
+        DataPayload[] tmpEntries = entries;
+        entries = oldEntries;
+        oldEntries = tmpEntries;
+
+        int[] tmpHashCodes = hashCodes;
+        hashCodes = oldHashCodes;
+        oldHashCodes = tmpHashCodes;
+
+        HashCodeComputer tmpHashCodeComputer = hashCodeComputer;
+        hashCodeComputer = oldHashCodeComputer;
+        oldHashCodeComputer = tmpHashCodeComputer;
+    }
+
+    private void freeInOldTable(int idx) {
+        swapTables();
+        free(idx);
+        swapTables();
+    }
+
+    protected int findInOldTable(AsciiString key) {
+        swapTables();
+        int pos = find(key);
+        swapTables();
+        return pos;
+    }
+
+    protected void freeEntry(DataPayload entry) {
+        int idx = entry.getInCachePosition();
+        if (oldEntries != null && idx < oldEntries.length && oldEntries[idx] == entry) {
+            freeInOldTable(idx);
+        } else {
+            free(idx);
         }
     }
 
@@ -81,6 +233,7 @@ public class LinearProbingHashMap implements Cache {
     protected void free(int idx) {
         count--;
         entries[idx].setInCachePosition(-1);
+        entries[idx].setHandleGeneration(EntryHandles.NO_GENERATION);
         entries[idx] = null;
 
         compactChain(idx);
@@ -97,9 +250,12 @@ public class LinearProbingHashMap implements Cache {
             }
 
             DataPayload entry = entries[curIdx];
-            int hidx = hashIndex(entries[curIdx].getKey());
+            int hidx = cacheHashCodes ? indexFor(hashCodes[curIdx]) : hashIndex(entry.getKey());
             if ((curIdx < hidx && (hidx <= deletedIdx || deletedIdx <= curIdx)) ||
                     (hidx <= deletedIdx && deletedIdx <= curIdx)) {
+                if (cacheHashCodes) {
+                    hashCodes[deletedIdx] = hashCodes[curIdx];
+                }
                 entries[deletedIdx] = entry;
                 entries[curIdx] = null;
                 entry.setInCachePosition(deletedIdx);
@@ -116,9 +272,23 @@ public class LinearProbingHashMap implements Cache {
     }
 
     protected int find(AsciiString key) {
+        if (cacheHashCodes) {
+            int hash = hashCodeComputer.hashCode(key);
+            return find(indexFor(hash), hash, key);
+        }
         return (find(hashIndex(key), key));
     }
 
+    private int find(int hidx, int hash, AsciiString key) {
+        int lengthMask = entries.length - 1;
+        for (; isFilled(hidx); hidx = (hidx + 1) & lengthMask) {
+            if (hashCodes[hidx] == hash && keyEquals(entries[hidx].getKey(), key)) {
+                return hidx;
+            }
+        }
+        return NULL;
+    }
+
     protected int find(int hidx, AsciiString key) {
         int lengthMask = entries.length - 1;
         for (; isFilled(hidx); hidx = (hidx + 1) & lengthMask) {
@@ -133,32 +303,137 @@ public class LinearProbingHashMap implements Cache {
         return (hashCodeComputer.modPowerOfTwoHashCode(key, entries.length));
     }
 
+    protected int indexFor(int hash) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(hash, entries.length));
+    }
+
     @Override
     public boolean putIfEmpty(DataPayload entry) {
+        return putIfEmpty(entry, hashCodeComputer.hashCode(entry.getKey()));
+    }
+
+    protected boolean putIfEmpty(DataPayload entry, int hash) {
+        if (oldEntries != null) {
+            migrate(MIGRATION_BATCH_SIZE);
+        }
+
         if (count >= threshold) {
             resizeTable(entries.length * 2);
         }
 
-        int hidx = hashIndex(entry.getKey());
         AsciiString key = entry.getKey();
+        final int home = indexFor(hash);
+        int hidx = home;
         int lengthMask = entries.length - 1;
         for (; isFilled(hidx); hidx = (hidx + 1) & lengthMask) {
-            if (keyEquals(entries[hidx].getKey(), key)) {
+            if ((!cacheHashCodes || hashCodes[hidx] == hash) && keyEquals(entries[hidx].getKey(), key)) {
                 return false;
             }
         }
 
+        if (oldEntries != null && findInOldTable(key) != NULL) {
+            return false;
+        }
+
         count++;
         entries[hidx] = entry;
+        if (cacheHashCodes) {
+            hashCodes[hidx] = hash;
+        }
         entry.setInCachePosition(hidx);
+
+        final int probeLength = (hidx - home) & lengthMask;
+        if (probeLength > maxProbeLength && oldEntries == null) {
+            reseed(probeLength);
+        }
         return true;
     }
 
     @Override
     public DataPayload get(AsciiString key) {
+        if (oldEntries != null) {
+            migrate(MIGRATION_BATCH_SIZE);
+        }
+
         int pos = find(key);
+        if (pos != NULL) {
+            inactiveDataQueue.recordAccess(entries[pos]);
+            return entries[pos];
+        }
 
-        return (pos == NULL) ? null : entries[pos];
+        if (oldEntries != null) {
+            pos = findInOldTable(key);
+            if (pos != NULL) {
+                inactiveDataQueue.recordAccess(oldEntries[pos]);
+                return oldEntries[pos];
+            }
+        }
+        return null;
+    }
+
+    private int[] batchHashes(int n) {
+        if (batchHashes.length < n) {
+            batchHashes = new int[n];
+        }
+        return batchHashes;
+    }
+
+    // loads the home slot of every key before any probe: the loads are independent, so their cache misses overlap
+    private void touchHomeSlots(int[] hashes, int n) {
+        int sink = 0;
+        for (int i = 0; i < n; i++) {
+            int hidx = indexFor(hashes[i]);
+            DataPayload entry = entries[hidx];
+            if (entry != null) {
+                sink += entry.getKey().getLength();
+            }
+            if (cacheHashCodes) {
+                sink += hashCodes[hidx];
+            }
+        }
+        batchSink = sink;
+    }
+
+    @Override
+    public void getAll(AsciiString[] keys, int n, DataPayload[] out) {
+        if (oldEntries != null) {
+            for (int i = 0; i < n; i++) {
+                out[i] = get(keys[i]); // every lookup moves the migration forward
+            }
+            return;
+        }
+
+        final int[] hashes = batchHashes(n);
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hashCodeComputer.hashCode(keys[i]);
+        }
+        touchHomeSlots(hashes, n);
+
+        for (int i = 0; i < n; i++) {
+            int hidx = indexFor(hashes[i]);
+            int pos = cacheHashCodes ? find(hidx, hashes[i], keys[i]) : find(hidx, keys[i]);
+            if (pos == NULL) {
+                out[i] = null;
+            } else {
+                inactiveDataQueue.recordAccess(entries[pos]);
+                out[i] = entries[pos];
+            }
+        }
+    }
+
+    @Override
+    public void putAllIfEmpty(DataPayload[] batch, int n, boolean[] out) {
+        final HashCodeComputer batchHashCodeComputer = hashCodeComputer;
+        final int[] hashes = batchHashes(n);
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hashCodeComputer.hashCode(batch[i].getKey());
+        }
+        touchHomeSlots(hashes, n);
+
+        for (int i = 0; i < n; i++) {
+            // a re-seed in the middle of the batch makes the remaining hash codes stale
+            out[i] = (hashCodeComputer == batchHashCodeComputer) ? putIfEmpty(batch[i], hashes[i]) : putIfEmpty(batch[i]);
+        }
     }
 
     protected void putEntry(DataPayload entry, int hidx) {
@@ -171,19 +446,94 @@ public class LinearProbingHashMap implements Cache {
         entry.setInCachePosition(hidx);
     }
 
-    protected void displaceOldestInactiveOrderIfQueueFull() {
-        if (inactiveDataQueue.isFull()) {
-            DataPayload oldestEntry = inactiveDataQueue.take();
-            free(oldestEntry.getInCachePosition());
+    private void putEntry(DataPayload entry, int hidx, int hash) {
+        int lengthMask = entries.length - 1;
+        while (isFilled(hidx)) {
+            hidx = (hidx + 1) & lengthMask;
         }
+        count++;
+        entries[hidx] = entry;
+        hashCodes[hidx] = hash;
+        entry.setInCachePosition(hidx);
     }
 
     @Override
     public void deactivate(DataPayload entry) {
-        assert find(entry.getKey()) != NULL;
+        if (oldEntries != null) {
+            migrate(MIGRATION_BATCH_SIZE);
+        }
 
-        displaceOldestInactiveOrderIfQueueFull();
-        inactiveDataQueue.put(entry);
+        assert find(entry.getKey()) != NULL || (oldEntries != null && findInOldTable(entry.getKey()) != NULL);
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            freeEntry(evicted);
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            freeEntry(entry);
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length) ? entries[slot] : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public boolean remove(DataPayload entry) {
+        final int idx = entry.getInCachePosition();
+        final boolean inTable = (idx >= 0 && idx < entries.length && entries[idx] == entry)
+                || (oldEntries != null && idx >= 0 && idx < oldEntries.length && oldEntries[idx] == entry);
+        if (!inTable) {
+            return false;
+        }
+        inactiveDataQueue.remove(entry);
+        freeEntry(entry);
+        return true;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
     }
 
     @Override
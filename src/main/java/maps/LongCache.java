@@ -0,0 +1,20 @@
+package maps;
+
+import internal.DataPayload;
+import internal.EvictionPolicy;
+
+/** Same contract as {@link Cache} for entries identified by a primitive long key */
+public interface LongCache {
+    boolean putIfEmpty(long key, DataPayload entry);
+    DataPayload get(long key);
+    void deactivate(DataPayload entry);
+    boolean reactivate(DataPayload entry);
+    boolean remove(DataPayload entry);
+    int tick(long nowNanos);
+    void setInactiveTtl(long ttlNanos);
+    void setEvictionPolicy(EvictionPolicy.Factory policyFactory);
+    void setProbeLengthGuard(int maxProbeLength, Cache.ReseedListener listener);
+
+    int capacity();
+    int size();
+}
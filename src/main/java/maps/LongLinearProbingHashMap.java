@@ -0,0 +1,261 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Linear probing {@link LongCache}: keys live in a primitive long[] next to the entries,
+ * so a probe compares keys with a single {@code ==} and never touches key bytes.
+ */
+public class LongLinearProbingHashMap implements LongCache {
+    public static final int MIN_CAPACITY = 16;
+    public static final float DEFAULT_LOAD_FACTOR = 0.5f;
+    protected static final int NULL = Integer.MIN_VALUE;
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
+    protected final float loadFactor;
+
+    protected int count = 0;
+
+    protected long[] keys;
+    protected DataPayload[] entries; // null marks an empty slot, so any long value can be a key
+    protected int threshold;
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected Cache.ReseedListener reseedListener;
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    public LongLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor) {
+        if (activeDataCount < MIN_CAPACITY)
+            activeDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (loadFactor <= 0 || loadFactor > 100) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 100");
+        }
+
+        this.loadFactor = loadFactor;
+
+        int totalCacheSize;
+        if (maxInactiveDataCount < activeDataCount) {
+            totalCacheSize = activeDataCount * 2;
+        } else {
+            totalCacheSize = maxInactiveDataCount * 2;
+        }
+
+        allocTable(totalCacheSize);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+        this.hashCodeComputer = hashCodeComputer;
+    }
+
+    protected void allocTable(int cap) {
+        keys = new long[cap];
+        entries = new DataPayload[cap];
+        threshold = (int)(cap * loadFactor);
+    }
+
+    protected void resizeTable(int newSize) {
+        final int curLength = entries.length;
+        final long[] saveKeys = keys;
+        final DataPayload[] saveOrders = entries;
+
+        allocTable(newSize);
+        count = 0;
+
+        for (int i = 0; i < curLength; i++) {
+            if (saveOrders[i] != null) {
+                putEntry(saveKeys[i], saveOrders[i], hashIndex(saveKeys[i]));
+            }
+        }
+    }
+
+    /** Rebuilds the table at the same size with a new seed */
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        resizeTable(entries.length);
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    protected final boolean isFilled(int idx) {
+        return (entries[idx] != null);
+    }
+
+    protected final boolean isEmpty(int idx) {
+        return (entries[idx] == null);
+    }
+
+    protected void free(int idx) {
+        count--;
+        entries[idx].setInCachePosition(-1);
+        entries[idx] = null;
+
+        compactChain(idx);
+    }
+
+    private void compactChain(int deletedIdx) {
+        int curIdx = deletedIdx;
+        int lengthMask = entries.length - 1;
+
+        while (true) {
+            curIdx = (curIdx + 1) & lengthMask;
+            if (isEmpty(curIdx)) {
+                break;
+            }
+
+            int hidx = hashIndex(keys[curIdx]);
+            if ((curIdx < hidx && (hidx <= deletedIdx || deletedIdx <= curIdx)) ||
+                    (hidx <= deletedIdx && deletedIdx <= curIdx)) {
+                DataPayload entry = entries[curIdx];
+                keys[deletedIdx] = keys[curIdx];
+                entries[deletedIdx] = entry;
+                entries[curIdx] = null;
+                entry.setInCachePosition(deletedIdx);
+                deletedIdx = curIdx;
+            }
+        }
+    }
+
+    protected int find(long key) {
+        int lengthMask = entries.length - 1;
+        for (int hidx = hashIndex(key); isFilled(hidx); hidx = (hidx + 1) & lengthMask) {
+            if (keys[hidx] == key) {
+                return hidx;
+            }
+        }
+        return NULL;
+    }
+
+    protected int hashIndex(long key) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(key, entries.length));
+    }
+
+    @Override
+    public boolean putIfEmpty(long key, DataPayload entry) {
+        if (count >= threshold) {
+            resizeTable(entries.length * 2);
+        }
+
+        final int home = hashIndex(key);
+        int lengthMask = entries.length - 1;
+        int hidx = home;
+        for (; isFilled(hidx); hidx = (hidx + 1) & lengthMask) {
+            if (keys[hidx] == key) {
+                return false;
+            }
+        }
+
+        count++;
+        keys[hidx] = key;
+        entries[hidx] = entry;
+        entry.setInCachePosition(hidx);
+
+        final int probeLength = (hidx - home) & lengthMask;
+        if (probeLength > maxProbeLength) {
+            reseed(probeLength);
+        }
+        return true;
+    }
+
+    @Override
+    public DataPayload get(long key) {
+        int pos = find(key);
+
+        if (pos == NULL) {
+            return null;
+        }
+        DataPayload entry = entries[pos];
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    protected void putEntry(long key, DataPayload entry, int hidx) {
+        int lengthMask = entries.length - 1;
+        while (isFilled(hidx)) {
+            hidx = (hidx + 1) & lengthMask;
+        }
+        count++;
+        keys[hidx] = key;
+        entries[hidx] = entry;
+        entry.setInCachePosition(hidx);
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        assert entries[entry.getInCachePosition()] == entry;
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public boolean remove(DataPayload entry) {
+        final int idx = entry.getInCachePosition();
+        if (idx < 0 || idx >= entries.length || entries[idx] != entry) {
+            return false;
+        }
+        inactiveDataQueue.remove(entry);
+        free(idx);
+        return true;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, Cache.ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return entries.length;
+    }
+
+    @Override
+    public int size () {
+        return count;
+    }
+}
@@ -0,0 +1,373 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+import internal.KeyComparison;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static internal.UnsafeAccess.UNSAFE;
+import static internal.UnsafeAccess.copyMemory;
+
+/**
+ * Same layout as {@link RawLinearProbingHashMap}, but the key blocks (4 bytes of length followed by key bytes)
+ * live in native memory allocated through Unsafe, so the Java heap only holds the {@code DataPayload[]} references.
+ * <p>
+ * Native memory is released by {@link #close()}; the map must not be used after that.
+ */
+public class OffHeapRawLinearProbingHashMap implements Cache, AutoCloseable {
+    public static final int MIN_CAPACITY = 16;
+    public static final int DEFAULT_LOAD_FACTOR = 50;
+    public static final int DEFAULT_MAX_KEY_LENGTH = 64;
+    public static final int DEFAULT_ALIGNMENT = 64;             // cache line
+    public static final int HUGE_PAGE_ALIGNMENT = 2 * 1024 * 1024; // lets transparent huge pages back the whole block
+    protected final int loadFactor;
+    protected static final int NULL = Integer.MIN_VALUE;
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
+
+    protected int count = 0;
+    protected long collisions = 0;
+    protected final int maxKeyLength;
+    protected final int alignment;
+
+    protected DataPayload[] entries;
+    protected int lengthMask;
+
+    // native block is divided by blocks length of maxKeyLength. Each block contains 4 bytes for length of the key and key itself in [4; maxKeyLength) range
+    protected long allocatedAddress; // as returned by allocateMemory, used to free the block
+    protected long keysAddress;      // aligned start of the key blocks
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
+
+    public OffHeapRawLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR, DEFAULT_MAX_KEY_LENGTH, DEFAULT_ALIGNMENT);
+    }
+
+    /**
+     * @param alignment power of 2 alignment of the key block start, use {@link #HUGE_PAGE_ALIGNMENT} to make it huge-page friendly
+     */
+    public OffHeapRawLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, int loadFactor, int maxKeyLength, int alignment) {
+        if (activeDataCount < MIN_CAPACITY)
+            activeDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (Integer.bitCount(maxKeyLength) != 1) {
+            throw new IllegalArgumentException("maxKeyLength must be a power of 2");
+        }
+
+        if (loadFactor <= 0 || loadFactor > 100) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 100");
+        }
+
+        if (maxKeyLength < 32) {
+            throw new IllegalArgumentException("maxKeyLength must be at least 32");
+        }
+
+        if (alignment < 8 || Integer.bitCount(alignment) != 1) {
+            throw new IllegalArgumentException("alignment must be a power of 2 and at least 8");
+        }
+
+        this.loadFactor = loadFactor;
+        this.maxKeyLength = maxKeyLength;
+        this.alignment = alignment;
+
+        int totalCacheSize;
+        if (maxInactiveDataCount < activeDataCount) {
+            totalCacheSize = activeDataCount * 2;
+        } else {
+            totalCacheSize = maxInactiveDataCount * 2;
+        }
+
+        allocTable(totalCacheSize);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+        this.hashCodeComputer = hashCodeComputer;
+    }
+
+    private long getKeyAddress(int idx) {
+        return keysAddress + (long) idx * maxKeyLength;
+    }
+
+    private int getKeyLength(int idx) {
+        return UNSAFE.getInt(getKeyAddress(idx));
+    }
+
+    private boolean compareKeys(AsciiString key, int idx) {
+        int length = getKeyLength(idx);
+        if (key.getLength() != length) {
+            return false;
+        }
+        // ByteVector loads only from arrays and byte buffers on JDK 17
+        return KeyComparison.scalarEquals(key.getArray(), key.getAddress(), null, getKeyAddress(idx) + 4, length);
+    }
+
+    private int nextFree(int idx) {
+        int attempts = 0;
+        while (attempts < entries.length && isFilled(idx)) {
+            idx = (idx + 1) & lengthMask;
+            attempts++;
+        }
+        collisions += (attempts > 0 ? 1 : 0);
+        return idx;
+    }
+
+    private void copyKey(AsciiString key, int idx) {
+        int length = key.getLength();
+        long address = getKeyAddress(idx);
+        UNSAFE.putInt(address, length);
+        copyMemory(key.getArray(), key.getAddress(), null, address + 4, length); // null base: absolute address
+    }
+
+    private void setEntry(DataPayload entry, AsciiString key, int idx) {
+        entry.setInCachePosition(idx);
+        entries[idx] = entry;
+        copyKey(key, idx);
+    }
+
+    protected void allocTable(int cap) {
+        entries = new DataPayload[cap];
+        lengthMask = cap - 1;
+
+        allocatedAddress = UNSAFE.allocateMemory((long) cap * maxKeyLength + alignment);
+        keysAddress = (allocatedAddress + alignment - 1) & -alignment;
+    }
+
+    protected void resizeTable(int newSize) {
+        handles.invalidateAll();
+        final int curLength = entries.length;
+        final DataPayload[] saveOrders = entries;
+        final long saveAllocatedAddress = allocatedAddress;
+
+        allocTable(newSize);
+        count = 0;
+
+        for (int i = 0; i < curLength; i++) {
+            if (saveOrders[i] != null) {
+                putNewNoSpaceCheck(saveOrders[i]);
+            }
+        }
+
+        UNSAFE.freeMemory(saveAllocatedAddress);
+    }
+
+    /** Rebuilds the table at the same size with a new seed */
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        resizeTable(entries.length);
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    protected void putNewNoSpaceCheck(DataPayload entry) {
+        int hidx = nextFree(hashIndex(entry.getKey()));
+
+        count++;
+        setEntry(entry, entry.getKey(), hidx);
+    }
+
+    protected final boolean isFilled(int idx) {
+        return (entries[idx] != null);
+    }
+
+    protected final boolean isEmpty(int idx) {
+        return (entries[idx] == null);
+    }
+
+    protected void free(int idx) {
+        count--;
+        entries[idx].setInCachePosition(-1);
+        entries[idx].setHandleGeneration(EntryHandles.NO_GENERATION);
+        entries[idx] = null;
+
+        compactChain(idx);
+    }
+
+    private void compactChain(int deletedIdx) {
+        int curIdx = deletedIdx;
+
+        while (true) {
+            curIdx = (curIdx + 1) & lengthMask;
+            if (isEmpty(curIdx)) {
+                break;
+            }
+
+            DataPayload entry = entries[curIdx];
+            AsciiString key = entry.getKey();
+            int hidx = hashIndex(key);
+            if ((curIdx < hidx && (hidx <= deletedIdx || deletedIdx <= curIdx)) ||
+                    (hidx <= deletedIdx && deletedIdx <= curIdx)) {
+                setEntry(entry, key, deletedIdx);
+                entries[curIdx] = null;
+                deletedIdx = curIdx;
+            }
+        }
+    }
+
+    protected boolean keyEquals(AsciiString a, int idx) {
+        if (a == null) {
+            return isEmpty(idx);
+        }
+        return compareKeys(a, idx);
+    }
+
+    protected int find(AsciiString key) {
+        return (find(hashIndex(key), key));
+    }
+
+    protected int find(int hidx, AsciiString key) {
+        int attempts = 0;
+        for (; attempts < entries.length && isFilled(hidx); hidx = (hidx + 1) & lengthMask, attempts++) {
+            if (keyEquals(key, hidx)) {
+                return hidx;
+            }
+        }
+        return NULL;
+    }
+
+    protected int hashIndex(AsciiString key) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(key, entries.length));
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        AsciiString key = entry.getKey();
+        if (key.getLength() > maxKeyLength - 4) {
+            throw new IllegalArgumentException("Key is longer than " + (maxKeyLength - 4) + " bytes: " + key);
+        }
+        int hidx = hashIndex(key);
+        int idx = find(hidx, key);
+
+        if (idx != NULL) {
+            return false;
+        }
+
+        if (count * 100 >= entries.length * loadFactor) {
+            resizeTable(entries.length * 2);
+            hidx = hashIndex(key);
+        }
+
+        putEntry(entry, key, hidx);
+
+        final int probeLength = (entry.getInCachePosition() - hidx) & lengthMask;
+        if (probeLength > maxProbeLength) {
+            reseed(probeLength);
+        }
+        return true;
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        int pos = find(key);
+
+        if (pos == NULL) {
+            return null;
+        }
+        DataPayload entry = entries[pos];
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    protected void putEntry(DataPayload entry, AsciiString key, int hidx) {
+        hidx = nextFree(hidx);
+        count++;
+        setEntry(entry, key, hidx);
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        assert find(entry.getKey()) != NULL;
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length) ? entries[slot] : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return entries.length;
+    }
+
+    @Override
+    public int size () {
+        return count;
+    }
+
+    /** Bytes of native memory used to keep keys: fixed size key blocks of every slot plus alignment padding. */
+    public long keyStorageBytes() {
+        return (long) entries.length * maxKeyLength + alignment;
+    }
+
+    /** Releases native memory of the key blocks. */
+    @Override
+    public void close() {
+        if (allocatedAddress != 0) {
+            UNSAFE.freeMemory(allocatedAddress);
+            allocatedAddress = 0;
+            keysAddress = 0;
+        }
+    }
+}
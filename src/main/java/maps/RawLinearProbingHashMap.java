@@ -3,7 +3,11 @@ package maps;
 import hashing.HashCodeComputer;
 import internal.AsciiString;
 import internal.DataPayload;
-import internal.FixedSizeQueue;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+import internal.KeyComparison;
+
+import java.util.concurrent.ThreadLocalRandom;
 
 import static internal.UnsafeAccess.UNSAFE;
 import static internal.UnsafeAccess.copyMemory;
@@ -13,9 +17,12 @@ public class RawLinearProbingHashMap implements Cache {
     public static final int MIN_CAPACITY = 16;
     public static final int DEFAULT_LOAD_FACTOR = 50;
     public static final int DEFAULT_MAX_KEY_LENGTH = 64;
+    public static final int MIGRATION_BATCH_SIZE = 64; // old table slots visited per operation during incremental resize
     protected final int loadFactor;
+    protected final boolean incrementalResize;
+    protected final boolean cacheHashCodes;
     protected static final int NULL = Integer.MIN_VALUE;
-    protected final HashCodeComputer hashCodeComputer;
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
 
     protected int count = 0;
     protected long collisions = 0;
@@ -26,14 +33,50 @@ public class RawLinearProbingHashMap implements Cache {
 
     // array keys is divided by blocks length of maxKeyLength. Each block contains 4 bytes for length of the key and key itself in [4; maxKeyLength) range
     protected byte[] keys;
+    protected int[] hashCodes; // full hash code of every stored key, allocated only when cacheHashCodes is set
+
+    // incremental resize: the previous table stays alive until all its entries are moved into the current one
+    protected DataPayload[] oldEntries; // not null while migration is in progress
+    protected byte[] oldKeys;
+    protected int[] oldHashCodes;
+    protected int oldLengthMask;
+    protected HashCodeComputer oldHashCodeComputer;
+    protected int migrationIdx;         // all old table slots below it are empty
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
 
-    protected final FixedSizeQueue<DataPayload> inactiveDataQueue; // contains most recent inactive orders
+    private int[] batchHashes = new int[0]; // scratch of getAll/putAllIfEmpty (the map is single-threaded)
+    private int batchSink;                  // keeps the loads of touchHomeSlots alive
 
     public RawLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
         this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR, DEFAULT_MAX_KEY_LENGTH);
     }
 
     public RawLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, int loadFactor, int maxKeyLength) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, loadFactor, maxKeyLength, false);
+    }
+
+    /**
+     * @param incrementalResize when true, growing the table does not rehash it inside a single putIfEmpty:
+     *                          the old table is kept and every following operation moves at most
+     *                          {@link #MIGRATION_BATCH_SIZE} of its slots into the new one
+     */
+    public RawLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, int loadFactor, int maxKeyLength, boolean incrementalResize) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, loadFactor, maxKeyLength, incrementalResize, false);
+    }
+
+    /**
+     * @param cacheHashCodes when true, the hash code of every key is kept next to its entry:
+     *                       probing compares hash codes before key blocks, and compaction and resize
+     *                       move key blocks inside the table without hashing the keys again
+     */
+    public RawLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, int loadFactor, int maxKeyLength,
+                                   boolean incrementalResize, boolean cacheHashCodes) {
         if (activeDataCount < MIN_CAPACITY)
             activeDataCount = MIN_CAPACITY;
 
@@ -55,6 +98,8 @@ public class RawLinearProbingHashMap implements Cache {
 
         this.loadFactor = loadFactor;
         this.maxKeyLength = maxKeyLength;
+        this.incrementalResize = incrementalResize;
+        this.cacheHashCodes = cacheHashCodes;
 
         int totalCacheSize;
         if (maxInactiveDataCount < activeDataCount) {
@@ -64,7 +109,7 @@ public class RawLinearProbingHashMap implements Cache {
         }
 
         allocTable(totalCacheSize);
-        inactiveDataQueue = new FixedSizeQueue<>(maxInactiveDataCount);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
         this.hashCodeComputer = hashCodeComputer;
     }
 
@@ -81,41 +126,7 @@ public class RawLinearProbingHashMap implements Cache {
         if (key.getLength() != length) {
             return false;
         }
-        byte[] keyArray = key.getArray();
-        long keyAddress = key.getAddress();
-
-        int i = 0;
-        long offset = ARRAY_BYTE_BASE_OFFSET + getKeyId(idx) + 4;
-        while (i + 8 <= length) {
-            long lhs = UNSAFE.getLong(keyArray, keyAddress + i);
-            long rhs = UNSAFE.getLong(keys, offset + i);
-
-            if (lhs != rhs) {
-                return false;
-            }
-            i += 8;
-        }
-        while (i + 4 <= length) {
-            int lhs = UNSAFE.getInt(keyArray, keyAddress + i);
-            int rhs = UNSAFE.getInt(keys, offset + i);
-
-            if (lhs != rhs) {
-                return false;
-            }
-            i += 4;
-        }
-
-        while (i + 2 <= length) {
-            short lhs = UNSAFE.getShort(keyArray, keyAddress + i);
-            short rhs = UNSAFE.getShort(keys, offset + i);
-
-            if (lhs != rhs) {
-                return false;
-            }
-            i += 2;
-        }
-
-        return i == length || UNSAFE.getByte(keyArray, keyAddress + i) == UNSAFE.getByte(keys, offset + i);
+        return KeyComparison.equals(key.getArray(), key.getAddress(), keys, ARRAY_BYTE_BASE_OFFSET + getKeyId(idx) + 4, length);
     }
 
     private int nextFree(int idx) {
@@ -143,26 +154,171 @@ public class RawLinearProbingHashMap implements Cache {
         copyKey(key, idx);
     }
 
+    // used with cached hash codes only: the key block is copied from the table, not from the key
+    private void moveEntry(int fromIdx, int toIdx) {
+        DataPayload entry = entries[fromIdx];
+        entry.setInCachePosition(toIdx);
+        entries[toIdx] = entry;
+        hashCodes[toIdx] = hashCodes[fromIdx];
+        UNSAFE.copyMemory(keys, ARRAY_BYTE_BASE_OFFSET + getKeyId(fromIdx), keys, ARRAY_BYTE_BASE_OFFSET + getKeyId(toIdx), 4 + getKeyLength(fromIdx));
+    }
+
+    // used with cached hash codes only: places an entry copied from another table without touching its key
+    private int putRehashed(DataPayload entry, int hash, byte[] srcKeys, int srcIdx) {
+        int idx = nextFree(indexFor(hash));
+        long srcOffset = ARRAY_BYTE_BASE_OFFSET + getKeyId(srcIdx);
+
+        count++;
+        entry.setInCachePosition(idx);
+        entries[idx] = entry;
+        hashCodes[idx] = hash;
+        UNSAFE.copyMemory(srcKeys, srcOffset, keys, ARRAY_BYTE_BASE_OFFSET + getKeyId(idx), 4 + UNSAFE.getInt(srcKeys, srcOffset));
+        return idx;
+    }
+
     protected void allocTable(int cap) {
         entries = new DataPayload[cap];
         keys = new byte[cap * maxKeyLength];
+        if (cacheHashCodes) {
+            hashCodes = new int[cap];
+        }
         lengthMask = cap - 1;
     }
 
     protected void resizeTable(int newSize) {
+        if (incrementalResize) {
+            startMigration(newSize);
+            return;
+        }
+
+        handles.invalidateAll();
+        if (oldEntries != null) {
+            migrate(Integer.MAX_VALUE); // a re-seed is in progress
+        }
+
         final int curLength = entries.length;
         final DataPayload[] saveOrders = entries;
+        final byte[] saveKeys = keys;
+        final int[] saveHashCodes = hashCodes;
 
         allocTable(newSize);
         count = 0;
 
         for (int i = 0; i < curLength; i++) {
             if (saveOrders[i] != null) {
-                putNewNoSpaceCheck(saveOrders[i]);
+                if (cacheHashCodes) {
+                    putRehashed(saveOrders[i], saveHashCodes[i], saveKeys, i);
+                } else {
+                    putNewNoSpaceCheck(saveOrders[i]);
+                }
             }
         }
     }
 
+    protected void startMigration(int newSize) {
+        handles.invalidateAll();
+        if (oldEntries != null) {
+            migrate(Integer.MAX_VALUE); // previous resize must be completed first
+        }
+
+        oldEntries = entries;
+        oldKeys = keys;
+        oldHashCodes = hashCodes;
+        oldLengthMask = lengthMask;
+        oldHashCodeComputer = hashCodeComputer;
+        migrationIdx = 0;
+        allocTable(newSize);
+    }
+
+    /** Moves all entries into a table of the same size hashed with a new seed, the same way an incremental resize does */
+    protected void reseed(int probeLength) {
+        startMigration(entries.length);
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    /**
+     * Moves entries from the old table into the current one, visiting at most maxSlots old table slots.
+     * Entries are removed from the old table with the regular backward-shift deletion, so the old table
+     * stays a valid linear probing table and can be searched at any moment.
+     */
+    protected void migrate(int maxSlots) {
+        final DataPayload[] old = oldEntries;
+
+        for (int visited = 0; visited < maxSlots && migrationIdx < old.length; visited++) {
+            DataPayload entry = old[migrationIdx];
+            if (entry == null) {
+                migrationIdx++;
+                continue;
+            }
+
+            if (cacheHashCodes) {
+                // key block must be copied before the old slot is reused by compaction
+                int hash = (oldHashCodeComputer == hashCodeComputer) ? oldHashCodes[migrationIdx] : hashCodeComputer.hashCode(entry.getKey());
+                int idx = putRehashed(entry, hash, oldKeys, migrationIdx);
+                freeInOldTable(migrationIdx); // compaction may move next chain entry into migrationIdx
+                entry.setInCachePosition(idx);
+            } else {
+                freeInOldTable(migrationIdx);
+                putNewNoSpaceCheck(entry);
+            }
+        }
+
+        if (migrationIdx == old.length) {
+            oldEntries = null;
+            oldKeys = null;
+            oldHashCodes = null;
+            oldHashCodeComputer = null;
+        }
+    }
+
+    // Old table is handled by the same code as the current one: swap them for the duration of the call
+    private void swapTables() {
+        DataPayload[] tmpEntries = entries;
+        entries = oldEntries;
+        oldEntries = tmpEntries;
+
+        byte[] tmpKeys = keys;
+        keys = oldKeys;
+        oldKeys = tmpKeys;
+
+        int[] tmpHashCodes = hashCodes;
+        hashCodes = oldHashCodes;
+        oldHashCodes = tmpHashCodes;
+
+        int tmpLengthMask = lengthMask;
+        lengthMask = oldLengthMask;
+        oldLengthMask = tmpLengthMask;
+
+        HashCodeComputer tmpHashCodeComputer = hashCodeComputer;
+        hashCodeComputer = oldHashCodeComputer;
+        oldHashCodeComputer = tmpHashCodeComputer;
+    }
+
+    private void freeInOldTable(int idx) {
+        swapTables();
+        free(idx);
+        swapTables();
+    }
+
+    protected int findInOldTable(AsciiString key) {
+        swapTables();
+        int pos = find(key);
+        swapTables();
+        return pos;
+    }
+
+    protected void freeEntry(DataPayload entry) {
+        int idx = entry.getInCachePosition();
+        if (oldEntries != null && idx < oldEntries.length && oldEntries[idx] == entry) {
+            freeInOldTable(idx);
+        } else {
+            free(idx);
+        }
+    }
+
     protected void putNewNoSpaceCheck(DataPayload entry) {
         int hidx = nextFree(hashIndex(entry.getKey()));
 
@@ -181,6 +337,7 @@ public class RawLinearProbingHashMap implements Cache {
     protected void free(int idx) {
         count--;
         entries[idx].setInCachePosition(-1);
+        entries[idx].setHandleGeneration(EntryHandles.NO_GENERATION);
         entries[idx] = null;
 
         compactChain(idx);
@@ -196,11 +353,14 @@ public class RawLinearProbingHashMap implements Cache {
             }
 
             DataPayload entry = entries[curIdx];
-            AsciiString key = entry.getKey();
-            int hidx = hashIndex(key);
+            int hidx = cacheHashCodes ? indexFor(hashCodes[curIdx]) : hashIndex(entry.getKey());
             if ((curIdx < hidx && (hidx <= deletedIdx || deletedIdx <= curIdx)) ||
                     (hidx <= deletedIdx && deletedIdx <= curIdx)) {
-                setEntry(entry, key, deletedIdx);
+                if (cacheHashCodes) {
+                    moveEntry(curIdx, deletedIdx);
+                } else {
+                    setEntry(entry, entry.getKey(), deletedIdx);
+                }
                 entries[curIdx] = null;
                 deletedIdx = curIdx;
             }
@@ -215,9 +375,23 @@ public class RawLinearProbingHashMap implements Cache {
     }
 
     protected int find(AsciiString key) {
+        if (cacheHashCodes) {
+            int hash = hashCodeComputer.hashCode(key);
+            return find(indexFor(hash), hash, key);
+        }
         return (find(hashIndex(key), key));
     }
 
+    private int find(int hidx, int hash, AsciiString key) {
+        int attempts = 0;
+        for (; attempts < entries.length && isFilled(hidx); hidx = (hidx + 1) & lengthMask, attempts++) {
+            if (hashCodes[hidx] == hash && keyEquals(key, hidx)) {
+                return hidx;
+            }
+        }
+        return NULL;
+    }
+
     protected int find(int hidx, AsciiString key) {
         int attempts = 0;
         for (; attempts < entries.length && isFilled(hidx); hidx = (hidx + 1) & lengthMask, attempts++) {
@@ -232,51 +406,208 @@ public class RawLinearProbingHashMap implements Cache {
         return (hashCodeComputer.modPowerOfTwoHashCode(key, entries.length));
     }
 
+    protected int indexFor(int hash) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(hash, entries.length));
+    }
+
     @Override
     public boolean putIfEmpty(DataPayload entry) {
+        return putIfEmpty(entry, hashCodeComputer.hashCode(entry.getKey()));
+    }
+
+    protected boolean putIfEmpty(DataPayload entry, int hash) {
+        if (oldEntries != null) {
+            migrate(MIGRATION_BATCH_SIZE);
+        }
+
         AsciiString key = entry.getKey();
-        int hidx = hashIndex(key);
-        int idx = find(hidx, key);
+        if (key.getLength() > maxKeyLength - 4) {
+            throw new IllegalArgumentException("Key is longer than " + (maxKeyLength - 4) + " bytes: " + key);
+        }
+        int hidx = indexFor(hash);
+        int idx = cacheHashCodes ? find(hidx, hash, key) : find(hidx, key);
 
         if (idx != NULL) {
             return false;
         }
 
+        if (oldEntries != null && findInOldTable(key) != NULL) {
+            return false;
+        }
+
         if (count * 100 >= entries.length * loadFactor) {
             resizeTable(entries.length * 2);
-            hidx = hashIndex(key);
+            hidx = indexFor(hash);
         }
 
-        putEntry(entry, key, hidx);
+        putEntry(entry, key, hidx, hash);
+
+        final int probeLength = (entry.getInCachePosition() - hidx) & lengthMask;
+        if (probeLength > maxProbeLength && oldEntries == null) {
+            reseed(probeLength);
+        }
         return true;
     }
 
     @Override
     public DataPayload get(AsciiString key) {
+        if (oldEntries != null) {
+            migrate(MIGRATION_BATCH_SIZE);
+        }
+
         int pos = find(key);
+        if (pos != NULL) {
+            inactiveDataQueue.recordAccess(entries[pos]);
+            return entries[pos];
+        }
 
-        return (pos == NULL) ? null : entries[pos];
+        if (oldEntries != null) {
+            pos = findInOldTable(key);
+            if (pos != NULL) {
+                inactiveDataQueue.recordAccess(oldEntries[pos]);
+                return oldEntries[pos];
+            }
+        }
+        return null;
+    }
+
+    private int[] batchHashes(int n) {
+        if (batchHashes.length < n) {
+            batchHashes = new int[n];
+        }
+        return batchHashes;
+    }
+
+    // loads the home slot of every key before any probe: the loads are independent, so their cache misses overlap
+    private void touchHomeSlots(int[] hashes, int n) {
+        int sink = 0;
+        for (int i = 0; i < n; i++) {
+            int hidx = indexFor(hashes[i]);
+            if (isFilled(hidx)) {
+                sink += getKeyLength(hidx);
+            }
+            if (cacheHashCodes) {
+                sink += hashCodes[hidx];
+            }
+        }
+        batchSink = sink;
+    }
+
+    @Override
+    public void getAll(AsciiString[] keys, int n, DataPayload[] out) {
+        if (oldEntries != null) {
+            for (int i = 0; i < n; i++) {
+                out[i] = get(keys[i]); // every lookup moves the migration forward
+            }
+            return;
+        }
+
+        final int[] hashes = batchHashes(n);
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hashCodeComputer.hashCode(keys[i]);
+        }
+        touchHomeSlots(hashes, n);
+
+        for (int i = 0; i < n; i++) {
+            int hidx = indexFor(hashes[i]);
+            int pos = cacheHashCodes ? find(hidx, hashes[i], keys[i]) : find(hidx, keys[i]);
+            if (pos == NULL) {
+                out[i] = null;
+            } else {
+                inactiveDataQueue.recordAccess(entries[pos]);
+                out[i] = entries[pos];
+            }
+        }
     }
 
-    protected void putEntry(DataPayload entry, AsciiString key, int hidx) {
+    @Override
+    public void putAllIfEmpty(DataPayload[] batch, int n, boolean[] out) {
+        final HashCodeComputer batchHashCodeComputer = hashCodeComputer;
+        final int[] hashes = batchHashes(n);
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hashCodeComputer.hashCode(batch[i].getKey());
+        }
+        touchHomeSlots(hashes, n);
+
+        for (int i = 0; i < n; i++) {
+            // a re-seed in the middle of the batch makes the remaining hash codes stale
+            out[i] = (hashCodeComputer == batchHashCodeComputer) ? putIfEmpty(batch[i], hashes[i]) : putIfEmpty(batch[i]);
+        }
+    }
+
+    protected void putEntry(DataPayload entry, AsciiString key, int hidx, int hash) {
         hidx = nextFree(hidx);
         count++;
         setEntry(entry, key, hidx);
+        if (cacheHashCodes) {
+            hashCodes[hidx] = hash;
+        }
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        if (oldEntries != null) {
+            migrate(MIGRATION_BATCH_SIZE);
+        }
+
+        assert find(entry.getKey()) != NULL || (oldEntries != null && findInOldTable(entry.getKey()) != NULL);
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            freeEntry(evicted);
+        }
     }
 
-    protected void displaceOldestInactiveOrderIfQueueFull() {
-        if (inactiveDataQueue.isFull()) {
-            DataPayload oldestEntry = inactiveDataQueue.take();
-            free(oldestEntry.getInCachePosition());
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            freeEntry(entry);
         }
+        return expired;
     }
 
     @Override
-    public void deactivate(DataPayload entry) {
-        assert find(entry.getKey()) != NULL;
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
 
-        displaceOldestInactiveOrderIfQueueFull();
-        inactiveDataQueue.put(entry);
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length) ? entries[slot] : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
     }
 
     @Override
@@ -288,4 +619,9 @@ public class RawLinearProbingHashMap implements Cache {
     public int size () {
         return count;
     }
+
+    /** Bytes used to keep keys: fixed size key blocks of every slot and cached hash codes. */
+    public long keyStorageBytes() {
+        return (long) keys.length + (hashCodes != null ? (long) hashCodes.length * Integer.BYTES : 0);
+    }
 }
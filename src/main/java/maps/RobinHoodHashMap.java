@@ -4,6 +4,8 @@ import hashing.HashCodeComputer;
 import internal.AsciiString;
 import internal.DataPayload;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 public final class RobinHoodHashMap extends LinearProbingHashMap {
     private int[] probeSeqLength;
 
@@ -15,6 +17,10 @@ public final class RobinHoodHashMap extends LinearProbingHashMap {
         super(activeDataCount, maxInactiveDataCount, hashCodeComputer, loadFactor);
     }
 
+    public RobinHoodHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor) {
+        super(activeDataCount, maxInactiveDataCount, hashCodeComputer, loadFactor);
+    }
+
     @Override
     protected void allocTable(int cap) {
         probeSeqLength = new int[cap];
@@ -25,6 +31,7 @@ public final class RobinHoodHashMap extends LinearProbingHashMap {
     protected void free(int idx) {
         count--;
         entries[idx].setInCachePosition(-1);
+        entries[idx].setHandleGeneration(EntryHandles.NO_GENERATION);
         entries[idx] = null;
         probeSeqLength[idx] = 0;
         int lengthMask = entries.length - 1;
@@ -83,12 +90,12 @@ public final class RobinHoodHashMap extends LinearProbingHashMap {
     }
 
     @Override
-    public boolean putIfEmpty(DataPayload entry) {
+    protected boolean putIfEmpty(DataPayload entry, int hash) {
         if (count >= threshold) {
             resizeTable(entries.length * 2);
         }
 
-        int hidx = hashIndex(entry.getKey());
+        int hidx = indexFor(hash);
         AsciiString key = entry.getKey();
         int currentProbeSeqLength = 0;
         int lengthMask = entries.length - 1;
@@ -98,6 +105,7 @@ public final class RobinHoodHashMap extends LinearProbingHashMap {
                 return false;
             }
         }
+        final int insertProbeLength = currentProbeSeqLength;
 
         DataPayload tmp;
         int lengthMask1 = entries.length - 1;
@@ -120,7 +128,22 @@ public final class RobinHoodHashMap extends LinearProbingHashMap {
         entry.setInCachePosition(hidx);
         entries[hidx] = entry;
         probeSeqLength[hidx] = currentProbeSeqLength;
+
+        // the new entry or the last one it displaced, whichever has probed further
+        final int probeLength = Math.max(insertProbeLength, currentProbeSeqLength);
+        if (probeLength > maxProbeLength) {
+            reseed(probeLength);
+        }
         return true;
     }
 
+    /** Rebuilds the table at the same size at once: migration would need the probe lengths of the old table too */
+    @Override
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        resizeTable(entries.length);
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
 }
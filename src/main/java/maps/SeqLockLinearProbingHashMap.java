@@ -0,0 +1,124 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * {@link LinearProbingHashMap} for one writer thread and any number of reader threads calling {@link #get}.
+ * <p>
+ * Only the writer may call {@code putIfEmpty} and {@code deactivate}; it never waits for readers.
+ * New entries are published with release semantics into an empty slot, so an insert does not disturb readers.
+ * Operations that move entries (backward shift compaction on free, resize) are wrapped into a table seqlock:
+ * the version is odd while entries are moving and readers retry when the version they started with has changed.
+ * Incremental resize, cached hash codes and eviction policies other than FIFO are not supported
+ * (the latter reorder inactive entries on every {@code get}).
+ */
+public final class SeqLockLinearProbingHashMap extends LinearProbingHashMap {
+    private static final VarHandle VERSION;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(DataPayload[].class);
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(SeqLockLinearProbingHashMap.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private long version; // odd while the writer moves entries
+
+    public SeqLockLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR);
+    }
+
+    public SeqLockLinearProbingHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor) {
+        super(activeDataCount, maxInactiveDataCount, hashCodeComputer, loadFactor, false, false);
+    }
+
+    private void beginWrite() {
+        VERSION.setOpaque(this, version + 1);
+        VarHandle.storeStoreFence(); // moved entries must not be visible before the odd version
+    }
+
+    private void endWrite() {
+        VERSION.setRelease(this, version + 1);
+    }
+
+    @Override
+    protected void free(int idx) {
+        beginWrite();
+        super.free(idx);
+        endWrite();
+    }
+
+    @Override
+    protected void resizeTable(int newSize) {
+        beginWrite();
+        super.resizeTable(newSize);
+        endWrite();
+    }
+
+    @Override
+    protected boolean putIfEmpty(DataPayload entry, int hash) {
+        VarHandle.releaseFence(); // entry is fully constructed before it is stored into a slot
+        return super.putIfEmpty(entry, hash);
+    }
+
+    /** Safe to call from any thread concurrently with the writer. */
+    @Override
+    public DataPayload get(AsciiString key) {
+        final int hash = hashCodeComputer.hashCode(key);
+
+        while (true) {
+            final long startVersion = (long) VERSION.getAcquire(this);
+            if ((startVersion & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            final DataPayload[] table = entries;
+            final int lengthMask = table.length - 1;
+            DataPayload result = null;
+            int hidx = hashCodeComputer.modPowerOfTwoHashCode(hash, table.length);
+            // attempts are bounded: racing with the writer, a probe may not meet an empty slot
+            for (int attempts = 0; attempts < table.length; hidx = (hidx + 1) & lengthMask, attempts++) {
+                DataPayload candidate = (DataPayload) SLOT.getAcquire(table, hidx);
+                if (candidate == null) {
+                    break;
+                }
+                if (keyEquals(candidate.getKey(), key)) {
+                    result = candidate;
+                    break;
+                }
+            }
+
+            VarHandle.loadLoadFence();
+            if ((long) VERSION.getOpaque(this) == startVersion) {
+                return result;
+            }
+        }
+    }
+
+    /** Safe to call from any thread concurrently with the writer: looks the keys up one by one. */
+    @Override
+    public void getAll(AsciiString[] keys, int n, DataPayload[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = get(keys[i]);
+        }
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        throw new UnsupportedOperationException("get() runs on reader threads and can not record accesses");
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        throw new UnsupportedOperationException("get() runs on reader threads and reads the hash code computer without locking");
+    }
+}
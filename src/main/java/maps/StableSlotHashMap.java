@@ -0,0 +1,312 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Map where an entry keeps its position for its whole life: entries live in a dense slab,
+ * and a linear probing index table refers to slab slots.
+ * <p>
+ * Every index word packs the key hash code (high half) and slab slot + 1 (low half), so probes compare hash codes
+ * without touching the slab. Removal leaves a tombstone in the index instead of shifting the chain,
+ * so {@link DataPayload#getInCachePosition()} (the slab slot) is written once on insert and index words never move
+ * until the index is rebuilt. Slab slots freed by eviction are reused by later inserts.
+ * For the same reason entry handles stay valid until the entry is evicted.
+ */
+public class StableSlotHashMap implements Cache {
+    public static final int MIN_CAPACITY = 16;
+    public static final float DEFAULT_LOAD_FACTOR = 0.5f;
+    protected static final int NULL = Integer.MIN_VALUE;
+
+    protected static final long EMPTY = 0;
+    protected static final long DELETED = 0xFFFFFFFFL; // slot + 1 is never -1
+
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
+    protected final float loadFactor;
+
+    protected int count = 0;
+    protected int deleted = 0; // tombstones in the index
+
+    protected long[] index;
+    protected int threshold;    // count + deleted must stay below it
+
+    protected DataPayload[] slab;
+    protected int[] indexPositions; // index word of every slab slot
+    protected int slabTop;          // slab slots above it have never been used
+    protected int[] freeSlots;      // stack of freed slab slots below slabTop
+    protected int freeCount;
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
+
+    public StableSlotHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR);
+    }
+
+    public StableSlotHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, float loadFactor) {
+        if (activeDataCount < MIN_CAPACITY)
+            activeDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 1 (exclusive)");
+        }
+
+        this.loadFactor = loadFactor;
+
+        int totalCacheSize;
+        if (maxInactiveDataCount < activeDataCount) {
+            totalCacheSize = activeDataCount * 2;
+        } else {
+            totalCacheSize = maxInactiveDataCount * 2;
+        }
+
+        allocIndex(totalCacheSize);
+        slab = new DataPayload[Math.max(threshold, 1)];
+        indexPositions = new int[slab.length];
+        freeSlots = new int[slab.length];
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+        this.hashCodeComputer = hashCodeComputer;
+    }
+
+    protected void allocIndex(int cap) {
+        index = new long[cap];
+        threshold = (int)(cap * loadFactor);
+        deleted = 0;
+    }
+
+    protected static int hashOf(long word) {
+        return (int) (word >>> 32);
+    }
+
+    protected static int slotOf(long word) {
+        return (int) word - 1;
+    }
+
+    /** Rebuilds the index: drops tombstones, and doubles its size when live entries take over half of the threshold. */
+    protected void rebuildIndex() {
+        final long[] saveIndex = index;
+        allocIndex(count * 2 <= threshold ? saveIndex.length : saveIndex.length * 2);
+
+        final int lengthMask = index.length - 1;
+        for (long word : saveIndex) {
+            if (word != EMPTY && word != DELETED) {
+                int idx = indexFor(hashOf(word));
+                while (index[idx] != EMPTY) {
+                    idx = (idx + 1) & lengthMask;
+                }
+                index[idx] = word;
+                indexPositions[slotOf(word)] = idx;
+            }
+        }
+    }
+
+    /** Rebuilds the index at the same size with a new seed; entries keep their slab slots, so handles stay valid */
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        allocIndex(index.length);
+
+        final int lengthMask = index.length - 1;
+        for (int slot = 0; slot < slabTop; slot++) {
+            if (slab[slot] != null) {
+                int hash = hashCodeComputer.hashCode(slab[slot].getKey());
+                int idx = indexFor(hash);
+                while (index[idx] != EMPTY) {
+                    idx = (idx + 1) & lengthMask;
+                }
+                index[idx] = ((long) hash << 32) | (slot + 1);
+                indexPositions[slot] = idx;
+            }
+        }
+
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, index.length);
+        }
+    }
+
+    protected int indexFor(int hash) {
+        return (hashCodeComputer.modPowerOfTwoHashCode(hash, index.length));
+    }
+
+    protected boolean keyEquals(AsciiString a, AsciiString b) {
+        if (a == null) {
+            return b == null;
+        }
+        return a.equals(b);
+    }
+
+    /** @return slab slot of the key */
+    protected int find(int hash, AsciiString key) {
+        final int lengthMask = index.length - 1;
+        for (int idx = indexFor(hash); index[idx] != EMPTY; idx = (idx + 1) & lengthMask) {
+            long word = index[idx];
+            if (word != DELETED && hashOf(word) == hash && keyEquals(slab[slotOf(word)].getKey(), key)) {
+                return slotOf(word);
+            }
+        }
+        return NULL;
+    }
+
+    private int allocSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slabTop == slab.length) {
+            int newLength = slab.length * 2;
+            slab = Arrays.copyOf(slab, newLength);
+            indexPositions = Arrays.copyOf(indexPositions, newLength);
+            freeSlots = Arrays.copyOf(freeSlots, newLength);
+        }
+        return slabTop++;
+    }
+
+    protected void free(int slot) {
+        count--;
+        slab[slot].setInCachePosition(-1);
+        slab[slot].setHandleGeneration(EntryHandles.NO_GENERATION);
+        slab[slot] = null;
+        index[indexPositions[slot]] = DELETED;
+        deleted++;
+        freeSlots[freeCount++] = slot;
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        if (count + deleted >= threshold) {
+            rebuildIndex();
+        }
+
+        AsciiString key = entry.getKey();
+        int hash = hashCodeComputer.hashCode(key);
+        final int lengthMask = index.length - 1;
+
+        int insertAt = NULL;
+        final int home = indexFor(hash);
+        int idx = home;
+        for (; index[idx] != EMPTY; idx = (idx + 1) & lengthMask) {
+            long word = index[idx];
+            if (word == DELETED) {
+                if (insertAt == NULL) {
+                    insertAt = idx;
+                }
+            } else if (hashOf(word) == hash && keyEquals(slab[slotOf(word)].getKey(), key)) {
+                return false;
+            }
+        }
+        if (insertAt == NULL) {
+            insertAt = idx;
+        } else {
+            deleted--;
+        }
+
+        int slot = allocSlot();
+        count++;
+        slab[slot] = entry;
+        indexPositions[slot] = insertAt;
+        index[insertAt] = ((long) hash << 32) | (slot + 1);
+        entry.setInCachePosition(slot);
+
+        final int probeLength = (insertAt - home) & lengthMask;
+        if (probeLength > maxProbeLength) {
+            reseed(probeLength);
+        }
+        return true;
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        int slot = find(hashCodeComputer.hashCode(key), key);
+
+        if (slot == NULL) {
+            return null;
+        }
+        DataPayload entry = slab[slot];
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        assert slab[entry.getInCachePosition()] == entry;
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < slabTop) ? slab[slot] : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return index.length;
+    }
+
+    @Override
+    public int size () {
+        return count;
+    }
+}
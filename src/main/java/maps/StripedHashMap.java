@@ -0,0 +1,181 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread safe cache: key space is split into power of 2 segments by the high bits of the (Fibonacci mixed) key hash code,
+ * every segment is a {@link LinearProbingHashMap} guarded by its own {@link StampedLock}.
+ * <p>
+ * {@code get} first runs as an optimistic read and takes the read lock only when a writer intervened.
+ * Inactive entries are retained per segment: every segment keeps at most {@code maxInactiveDataCount / segmentCount}
+ * of them and evicts in FIFO order of its own queue.
+ */
+public class StripedHashMap implements Cache {
+    public static final int DEFAULT_SEGMENT_COUNT = 16;
+    protected final HashCodeComputer hashCodeComputer;
+
+    protected final LinearProbingHashMap[] segments;
+    protected final StampedLock[] locks;
+    protected final int segmentShift;
+    protected final int segmentMask;
+
+    public StripedHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_SEGMENT_COUNT);
+    }
+
+    public StripedHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, int segmentCount) {
+        if (Integer.bitCount(segmentCount) != 1) {
+            throw new IllegalArgumentException("segmentCount must be a power of 2");
+        }
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (Integer.bitCount(maxInactiveDataCount) != 1) {
+            throw new IllegalArgumentException("maxInactiveDataCount must be a power of 2");
+        }
+
+        this.hashCodeComputer = hashCodeComputer;
+        int segmentBits = Integer.numberOfTrailingZeros(segmentCount);
+        this.segmentShift = 32 - segmentBits; // index inside a segment is taken from the low bits
+        this.segmentMask = segmentCount - 1;
+
+        segments = new LinearProbingHashMap[segmentCount];
+        locks = new StampedLock[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // segments must not resize incrementally: get() of such table migrates entries, so it is not read-only
+            segments[i] = new LinearProbingHashMap(Math.max(1, activeDataCount >> segmentBits),
+                    Math.max(1, maxInactiveDataCount >> segmentBits), hashCodeComputer);
+            locks[i] = new StampedLock();
+        }
+    }
+
+    protected int segmentFor(AsciiString key) {
+        // Fibonacci hashing: high bits of weak hash codes of short keys are mostly zero, multiplication spreads all bits into them
+        int hash = hashCodeComputer.hashCode(key) * 0x9E3779B9;
+        return (hash >>> segmentShift) & segmentMask; // shift by 32 is no-op, mask handles single segment
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        int segment = segmentFor(entry.getKey());
+        StampedLock lock = locks[segment];
+        long stamp = lock.writeLock();
+        try {
+            return segments[segment].putIfEmpty(entry);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        int segment = segmentFor(key);
+        StampedLock lock = locks[segment];
+        LinearProbingHashMap map = segments[segment];
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            DataPayload result;
+            try {
+                result = map.get(key);
+            } catch (RuntimeException e) {
+                result = null; // table was changed under our feet, the stamp is invalid
+            }
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return map.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        int segment = segmentFor(entry.getKey());
+        StampedLock lock = locks[segment];
+        long stamp = lock.writeLock();
+        try {
+            segments[segment].deactivate(entry);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        int segment = segmentFor(entry.getKey());
+        StampedLock lock = locks[segment];
+        long stamp = lock.writeLock();
+        try {
+            return segments[segment].reactivate(entry);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (int i = 0; i < segments.length; i++) {
+            long stamp = locks[i].writeLock();
+            try {
+                expired += segments[i].tick(nowNanos);
+            } finally {
+                locks[i].unlockWrite(stamp);
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        for (int i = 0; i < segments.length; i++) {
+            long stamp = locks[i].writeLock();
+            try {
+                segments[i].setInactiveTtl(ttlNanos);
+            } finally {
+                locks[i].unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public int capacity() {
+        int capacity = 0;
+        for (int i = 0; i < segments.length; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                capacity += segments[i].capacity();
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        return capacity;
+    }
+
+    /** Not a snapshot: segments are counted one by one while writers may run. */
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < segments.length; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                size += segments[i].size();
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,390 @@
+package maps;
+
+import hashing.HashCodeComputer;
+import internal.AsciiString;
+import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Open addressing map in the style of Abseil's flat_hash_map (SwissTable).
+ * <p>
+ * Every slot owns one control byte kept in a separate array: {@link #EMPTY}, {@link #DELETED} or the low 7 bits of the key hash.
+ * The first probed group comes from the high bits of the 64-bit hash ({@link HashCodeComputer#hash64}), so the fingerprint
+ * stays independent of the group at any table size.
+ * Slots are probed in aligned groups of {@link #GROUP_WIDTH}; a single vector compare of the group's control bytes
+ * against the 7-bit fingerprint selects the candidate slots, so only ~1/128 of non-matching entries are dereferenced
+ * and most misses are settled by the control bytes alone.
+ */
+public class SwissTableHashMap implements Cache {
+    public static final int MIN_CAPACITY = 16;
+    public static final int DEFAULT_LOAD_FACTOR = 87; // 7/8 as in Abseil
+    protected static final int NULL = Integer.MIN_VALUE;
+
+    protected static final VectorSpecies<Byte> GROUP_SPECIES = ByteVector.SPECIES_128;
+    protected static final int GROUP_WIDTH = 16;
+    protected static final int GROUP_SHIFT = 4;
+
+    // FULL slots hold a 7-bit fingerprint [0; 127], so both special states are negative
+    protected static final byte EMPTY = (byte) 0x80;
+    protected static final byte DELETED = (byte) 0xFE;
+
+    protected HashCodeComputer hashCodeComputer; // replaced by a seeded one when the probe length guard fires
+    protected final int loadFactor;
+
+    protected int count = 0;
+    protected int deleted = 0;  // number of DELETED control bytes (tombstones)
+    protected int growthLimit;  // count + deleted must stay below it, so every probe sequence meets an EMPTY group
+
+    protected DataPayload[] entries;
+    protected byte[] ctrl;
+    protected int groupMask;
+
+    protected int maxProbeLength = Integer.MAX_VALUE; // see Cache#setProbeLengthGuard
+    protected ReseedListener reseedListener;
+    protected int missComparisons; // keys compared by the last find which did not find its key
+
+    protected EvictionPolicy inactiveDataQueue; // chooses inactive orders to keep, FIFO by default
+
+    final EntryHandles handles = new EntryHandles(); // see Cache#putIfEmptyWithHandle
+
+    private long[] batchHashes = new long[0]; // scratch of getAll/putAllIfEmpty (the map is single-threaded)
+    private int batchSink;                  // keeps the loads of touchFirstGroups alive
+
+    public SwissTableHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer) {
+        this(activeDataCount, maxInactiveDataCount, hashCodeComputer, DEFAULT_LOAD_FACTOR);
+    }
+
+    public SwissTableHashMap(int activeDataCount, int maxInactiveDataCount, HashCodeComputer hashCodeComputer, int loadFactor) {
+        if (activeDataCount < MIN_CAPACITY)
+            activeDataCount = MIN_CAPACITY;
+
+        if (Integer.bitCount(activeDataCount) != 1) {
+            throw new IllegalArgumentException("activeDataCount must be a power of 2");
+        }
+
+        if (loadFactor <= 0 || loadFactor >= 100) {
+            throw new IllegalArgumentException("loadFactor must be between 0 and 100 (exclusive)");
+        }
+
+        this.loadFactor = loadFactor;
+
+        int totalCacheSize;
+        if (maxInactiveDataCount < activeDataCount) {
+            totalCacheSize = activeDataCount * 2;
+        } else {
+            totalCacheSize = maxInactiveDataCount * 2;
+        }
+
+        allocTable(totalCacheSize);
+        inactiveDataQueue = new FifoEvictionPolicy(maxInactiveDataCount);
+        this.hashCodeComputer = hashCodeComputer;
+    }
+
+    protected void allocTable(int cap) {
+        entries = new DataPayload[cap];
+        ctrl = new byte[cap];
+        Arrays.fill(ctrl, EMPTY);
+        groupMask = (cap >> GROUP_SHIFT) - 1;
+        growthLimit = Math.min((int) ((long) cap * loadFactor / 100), cap - 1);
+        deleted = 0;
+    }
+
+    protected void resizeTable(int newSize) {
+        handles.invalidateAll();
+        final int curLength = entries.length;
+        final DataPayload[] saveOrders = entries;
+
+        allocTable(newSize);
+        count = 0;
+
+        for (int i = 0; i < curLength; i++) {
+            if (saveOrders[i] != null) {
+                DataPayload entry = saveOrders[i];
+                long hash = hashCodeComputer.hash64(entry.getKey());
+                putEntry(entry, hash, findFree(hash));
+            }
+        }
+    }
+
+    /** Grows the table, or, when at most half of the limit is occupied by live entries, rebuilds it at the same size to drop the tombstones. */
+    protected void rehash() {
+        if (count * 2 <= growthLimit) {
+            resizeTable(entries.length);
+        } else {
+            resizeTable(entries.length * 2);
+        }
+    }
+
+    /** Rebuilds the table at the same size with a new seed */
+    protected void reseed(int probeLength) {
+        hashCodeComputer = hashCodeComputer.withSeed(ThreadLocalRandom.current().nextLong());
+        resizeTable(entries.length);
+        if (reseedListener != null) {
+            reseedListener.onReseed(probeLength, count, entries.length);
+        }
+    }
+
+    protected final int h1(long hash) {
+        return HashCodeComputer.highBitsIndex(hash, groupMask + 1);
+    }
+
+    protected static byte h2(long hash) {
+        return (byte) (hash & 0x7F);
+    }
+
+    protected final boolean isFilled(int idx) {
+        return ctrl[idx] >= 0;
+    }
+
+    protected void free(int idx) {
+        count--;
+        entries[idx].setInCachePosition(-1);
+        entries[idx].setHandleGeneration(EntryHandles.NO_GENERATION);
+        entries[idx] = null;
+
+        // A group that still has an EMPTY slot has never been full, so no probe sequence continues past it:
+        // the slot may become EMPTY again. Otherwise leave a tombstone to keep longer probe sequences intact.
+        ByteVector group = ByteVector.fromArray(GROUP_SPECIES, ctrl, idx & -GROUP_WIDTH);
+        if (group.eq(EMPTY).anyTrue()) {
+            ctrl[idx] = EMPTY;
+        } else {
+            ctrl[idx] = DELETED;
+            deleted++;
+        }
+    }
+
+    protected boolean keyEquals(AsciiString a, AsciiString b) {
+        if (a == null) {
+            return b == null;
+        }
+        return a.equals(b);
+    }
+
+    protected int find(AsciiString key) {
+        return find(hashCodeComputer.hash64(key), key);
+    }
+
+    protected int find(long hash, AsciiString key) {
+        final byte fingerprint = h2(hash);
+        int group = h1(hash);
+        int compared = 0;
+
+        for (int step = 1; ; step++) {
+            final int base = group << GROUP_SHIFT;
+            ByteVector ctrlGroup = ByteVector.fromArray(GROUP_SPECIES, ctrl, base);
+
+            long matches = ctrlGroup.eq(fingerprint).toLong();
+            while (matches != 0) {
+                int idx = base + Long.numberOfTrailingZeros(matches);
+                if (keyEquals(entries[idx].getKey(), key)) {
+                    return idx;
+                }
+                compared++;
+                matches &= matches - 1;
+            }
+
+            if (ctrlGroup.eq(EMPTY).anyTrue()) {
+                missComparisons = compared;
+                return NULL;
+            }
+            group = (group + step) & groupMask; // triangular probing visits every group of a power-of-two table
+        }
+    }
+
+    /** @return first EMPTY or DELETED slot on the probe sequence of the hash */
+    protected int findFree(long hash) {
+        int group = h1(hash);
+
+        for (int step = 1; ; step++) {
+            final int base = group << GROUP_SHIFT;
+            long free = ByteVector.fromArray(GROUP_SPECIES, ctrl, base)
+                    .compare(VectorOperators.LT, (byte) 0)
+                    .toLong();
+            if (free != 0) {
+                return base + Long.numberOfTrailingZeros(free);
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+    protected void putEntry(DataPayload entry, long hash, int idx) {
+        if (ctrl[idx] == DELETED) {
+            deleted--;
+        }
+        count++;
+        ctrl[idx] = h2(hash);
+        entries[idx] = entry;
+        entry.setInCachePosition(idx);
+    }
+
+    @Override
+    public boolean putIfEmpty(DataPayload entry) {
+        return putIfEmpty(entry, hashCodeComputer.hash64(entry.getKey()));
+    }
+
+    protected boolean putIfEmpty(DataPayload entry, long hash) {
+        AsciiString key = entry.getKey();
+        if (find(hash, key) != NULL) {
+            return false;
+        }
+
+        int idx = findFree(hash);
+        if (ctrl[idx] == EMPTY && count + deleted >= growthLimit) {
+            rehash();
+            idx = findFree(hash);
+        }
+
+        putEntry(entry, hash, idx);
+
+        // control bytes skip all other slots, so only the slots whose keys were compared count as probed
+        if (missComparisons > maxProbeLength) {
+            reseed(missComparisons);
+        }
+        return true;
+    }
+
+    @Override
+    public DataPayload get(AsciiString key) {
+        int pos = find(key);
+
+        if (pos == NULL) {
+            return null;
+        }
+        DataPayload entry = entries[pos];
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    private long[] batchHashes(int n) {
+        if (batchHashes.length < n) {
+            batchHashes = new long[n];
+        }
+        return batchHashes;
+    }
+
+    // loads the first probed group of every key before any probe: the loads are independent, so their cache misses overlap
+    private void touchFirstGroups(long[] hashes, int n) {
+        int sink = 0;
+        for (int i = 0; i < n; i++) {
+            final int base = (h1(hashes[i])) << GROUP_SHIFT;
+            sink += ctrl[base];
+            if (entries[base] != null) {
+                sink++;
+            }
+        }
+        batchSink = sink;
+    }
+
+    @Override
+    public void getAll(AsciiString[] keys, int n, DataPayload[] out) {
+        final long[] hashes = batchHashes(n);
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hashCodeComputer.hash64(keys[i]);
+        }
+        touchFirstGroups(hashes, n);
+
+        for (int i = 0; i < n; i++) {
+            int pos = find(hashes[i], keys[i]);
+            if (pos == NULL) {
+                out[i] = null;
+            } else {
+                inactiveDataQueue.recordAccess(entries[pos]);
+                out[i] = entries[pos];
+            }
+        }
+    }
+
+    @Override
+    public void putAllIfEmpty(DataPayload[] batch, int n, boolean[] out) {
+        final HashCodeComputer batchHashCodeComputer = hashCodeComputer;
+        final long[] hashes = batchHashes(n);
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hashCodeComputer.hash64(batch[i].getKey());
+        }
+        touchFirstGroups(hashes, n);
+
+        for (int i = 0; i < n; i++) {
+            // a re-seed in the middle of the batch makes the remaining hash codes stale
+            out[i] = (hashCodeComputer == batchHashCodeComputer) ? putIfEmpty(batch[i], hashes[i]) : putIfEmpty(batch[i]);
+        }
+    }
+
+    @Override
+    public void deactivate(DataPayload entry) {
+        assert find(entry.getKey()) != NULL;
+
+        DataPayload evicted = inactiveDataQueue.add(entry);
+        if (evicted != null) {
+            free(evicted.getInCachePosition());
+        }
+    }
+
+    @Override
+    public int tick(long nowNanos) {
+        int expired = 0;
+        for (DataPayload entry; (entry = inactiveDataQueue.takeExpired(nowNanos)) != null; expired++) {
+            free(entry.getInCachePosition());
+        }
+        return expired;
+    }
+
+    @Override
+    public void setInactiveTtl(long ttlNanos) {
+        inactiveDataQueue.setTtl(ttlNanos);
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy.Factory policyFactory) {
+        if (inactiveDataQueue.size() != 0) {
+            throw new IllegalStateException("Eviction policy can not be changed while there are inactive entries");
+        }
+        inactiveDataQueue = policyFactory.create(inactiveDataQueue.capacity());
+    }
+
+    @Override
+    public boolean reactivate(DataPayload entry) {
+        return inactiveDataQueue.remove(entry);
+    }
+
+    @Override
+    public long putIfEmptyWithHandle(DataPayload entry) {
+        return putIfEmpty(entry) ? handles.issue(entry) : NO_HANDLE;
+    }
+
+    @Override
+    public DataPayload getByHandle(long handle) {
+        final int slot = EntryHandles.slotOf(handle);
+        DataPayload entry = (slot >= 0 && slot < entries.length) ? entries[slot] : null;
+        if (!handles.matches(entry, handle)) {
+            return null;
+        }
+        inactiveDataQueue.recordAccess(entry);
+        return entry;
+    }
+
+    @Override
+    public void setProbeLengthGuard(int maxProbeLength, ReseedListener listener) {
+        if (maxProbeLength <= 0) {
+            throw new IllegalArgumentException("maxProbeLength must be positive");
+        }
+        this.maxProbeLength = maxProbeLength;
+        this.reseedListener = listener;
+    }
+
+    @Override
+    public int capacity() {
+        return entries.length;
+    }
+
+    @Override
+    public int size () {
+        return count;
+    }
+}
@@ -0,0 +1,267 @@
+package hashing;
+
+import internal.AsciiString;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import sun.misc.Unsafe;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static internal.UnsafeAccess.UNSAFE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashCodeComputersTest {
+
+    static Stream<HashCodeComputer> computers() {
+        return Stream.of(
+                DefaultHashCodeComputer.INSTANCE,
+                FasterHashCodeComputer.INSTANCE,
+                MetroHashCodeComputer.INSTANCE,
+                NativeHashCodeComputer.INSTANCE,
+                new PrefixSkippingHashCodeComputer("order-"),
+                UnrolledDefaultHashCodeComputer.INSTANCE,
+                VectorizedDefaultHashCodeComputer.INSTANCE,
+                VectorizedNativeHashCodeComputer.INSTANCE,
+                XxHashCodeComputer.INSTANCE,
+                vhFasterHashCodeComputer.INSTANCE,
+                vhHashCodeComputer.INSTANCE
+        );
+    }
+
+    private static AsciiString littleEndianBytes(long value) {
+        byte[] bytes = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array();
+        return new AsciiString(0).append(bytes);
+    }
+
+    @Test
+    void longHash_matchesHashOfKeyBytes() {
+        long[] values = {0, 1, -1, 42, Long.MIN_VALUE, Long.MAX_VALUE, 1_000_000_000_123L, 0x0123_4567_89AB_CDEFL};
+        for (HashCodeComputer computer : new HashCodeComputer[]{XxHashCodeComputer.INSTANCE, MetroHashCodeComputer.INSTANCE, NativeHashCodeComputer.INSTANCE}) {
+            for (long value : values) {
+                assertEquals(computer.hashCode(littleEndianBytes(value)), computer.hashCode(value),
+                        computer.getClass().getSimpleName() + " " + value);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("computers")
+    void longHash_spreadsSequentialKeys(HashCodeComputer computer) {
+        final int keys = 1 << 16;
+        final int buckets = 2 * keys;
+        final int[] counts = new int[buckets];
+
+        int maxLoad = 0;
+        for (int i = 0; i < keys; i++) {
+            int bucket = computer.modPowerOfTwoHashCode(1_000_000_000_000L + 7L * i, buckets);
+            assertTrue(bucket >= 0 && bucket < buckets);
+            maxLoad = Math.max(maxLoad, ++counts[bucket]);
+        }
+        assertTrue(maxLoad <= 8, computer.getClass().getSimpleName() + " max bucket load " + maxLoad);
+    }
+
+    @ParameterizedTest
+    @MethodSource("computers")
+    void cachedHash_isDroppedOnAppend(HashCodeComputer computer) {
+        AsciiString key = new AsciiString(64).append("order-").append(42);
+        assertEquals(computer.computeHashCode(key), computer.hashCode(key));
+        assertEquals(computer.computeHashCode(key), computer.hashCode(key));
+
+        key.append('x');
+        assertEquals(computer.computeHashCode(key), computer.hashCode(key));
+        assertEquals(computer.computeHashCode(new AsciiString("order-42x")), computer.hashCode(key));
+    }
+
+    @Test
+    void cachedHash_isPerComputer() {
+        AsciiString key = new AsciiString("0f8fad5b-d9cb-469f-a165-70867728950e");
+        int xx = XxHashCodeComputer.INSTANCE.hashCode(key);
+        int metro = MetroHashCodeComputer.INSTANCE.hashCode(key);
+
+        assertEquals(MetroHashCodeComputer.INSTANCE.computeHashCode(key), metro);
+        assertEquals(xx, XxHashCodeComputer.INSTANCE.hashCode(key));
+        assertEquals(metro, MetroHashCodeComputer.INSTANCE.hashCode(key));
+    }
+
+    @Test
+    void seed_changesHashCodes() {
+        AsciiString shortKey = new AsciiString("1761610691");
+        AsciiString longKey = new AsciiString("BE3F223A-3E39-443E-AEB8-3932A850C051");
+        for (HashCodeComputer computer : new HashCodeComputer[]{XxHashCodeComputer.INSTANCE, MetroHashCodeComputer.INSTANCE}) {
+            HashCodeComputer unseeded = computer.withSeed(0);
+            assertEquals(computer.hashCode(shortKey), unseeded.hashCode(shortKey));
+            assertEquals(computer.hashCode(longKey), unseeded.hashCode(longKey));
+
+            HashCodeComputer seeded = computer.withSeed(0x5EED);
+            assertNotEquals(computer.hashCode(shortKey), seeded.hashCode(shortKey));
+            assertNotEquals(computer.hashCode(longKey), seeded.hashCode(longKey));
+            assertEquals(seeded.hashCode(littleEndianBytes(42)), seeded.hashCode(42L));
+        }
+    }
+
+    @Test
+    void seed_separatesPolynomialCollisions() {
+        AsciiString aa = new AsciiString("AaAa");
+        AsciiString bb = new AsciiString("BBBB");
+        assertEquals(DefaultHashCodeComputer.INSTANCE.hashCode(aa), DefaultHashCodeComputer.INSTANCE.hashCode(bb));
+
+        HashCodeComputer seeded = DefaultHashCodeComputer.INSTANCE.withSeed(1);
+        assertNotEquals(seeded.hashCode(aa), seeded.hashCode(bb));
+    }
+
+    @Test
+    void modPowerOfTwo_keepsSignedHashCodesApart() {
+        assertEquals(0, HashCodeComputer.computeModPowerOfTwoHashCode(Integer.MIN_VALUE, 16));
+        assertEquals(15, HashCodeComputer.computeModPowerOfTwoHashCode(-1, 16));
+        assertNotEquals(HashCodeComputer.computeModPowerOfTwoHashCode(5, 16), HashCodeComputer.computeModPowerOfTwoHashCode(-5, 16));
+    }
+
+    @Test
+    void highBitsIndex_takesTopBits() {
+        assertEquals(0, HashCodeComputer.highBitsIndex(-1L, 1));
+        assertEquals(1, HashCodeComputer.highBitsIndex(Long.MIN_VALUE, 2));
+        assertEquals(0xFF, HashCodeComputer.highBitsIndex(0xFF00_0000_0000_00FFL, 256));
+        assertEquals((1 << 30) - 1, HashCodeComputer.highBitsIndex(-1L, 1 << 30));
+    }
+
+    @Test
+    void hash64_extends64BitHashCodes() {
+        AsciiString[] keys = {new AsciiString(""), new AsciiString("42"), new AsciiString("order-1761610691"),
+                new AsciiString("BE3F223A-3E39-443E-AEB8-3932A850C051")};
+        for (HashCodeComputer computer : new HashCodeComputer[]{XxHashCodeComputer.INSTANCE, MetroHashCodeComputer.INSTANCE,
+                XxHashCodeComputer.INSTANCE.withSeed(0x5EED)}) {
+            for (AsciiString key : keys) {
+                assertEquals(computer.computeHashCode(key), Long.hashCode(computer.hash64(key)),
+                        computer.getClass().getSimpleName() + " " + key);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("computers")
+    void hash64_spreadsHighAndLowBits(HashCodeComputer computer) {
+        final int keys = 1 << 16;
+        final int buckets = 2 * keys;
+        final int[] counts = new int[buckets];
+        final int[] counts32 = new int[buckets];
+        final int[] tags = new int[128];
+
+        int maxLoad = 0;
+        int maxLoad32 = 0; // mixing 32-bit hash codes keeps their collisions
+        for (int i = 0; i < keys; i++) {
+            // short keys leave most bits of a polynomial hash unset
+            AsciiString key = (i & 1) == 0 ? new AsciiString(4).append(i >>> 1) : new AsciiString(16).append(1_000_000_000L + i);
+            long hash = computer.hash64(key);
+            maxLoad = Math.max(maxLoad, ++counts[HashCodeComputer.highBitsIndex(hash, buckets)]);
+            tags[(int) hash & 0x7F]++;
+            maxLoad32 = Math.max(maxLoad32, ++counts32[computer.modPowerOfTwoHashCode(key, buckets)]);
+        }
+        assertTrue(maxLoad <= Math.max(8, maxLoad32), computer.getClass().getSimpleName() + " max bucket load " + maxLoad);
+        for (int tagCount : tags) {
+            assertTrue(maxLoad32 > 8 || Math.abs(tagCount - keys / 128) < keys / 128 / 4, computer.getClass().getSimpleName() + " tag count " + tagCount);
+        }
+    }
+
+    @Test
+    void vectorized_matchesScalarReference() {
+        final Random random = new Random(42);
+        for (int length = 0; length <= 160; length++) {
+            // slack 0 leaves no room for a full vector at the end of the key, so the scalar fallback runs too
+            for (int slack : new int[]{0, 1, 7, 64}) {
+                byte[] bytes = new byte[1 + length + slack];
+                random.nextBytes(bytes);
+                AsciiString key = new AsciiString(length + slack).append(bytes, 1, length);
+                String name = "length " + length + ", slack " + slack;
+
+                assertEquals(DefaultHashCodeComputer.INSTANCE.computeHashCode(key), VectorizedDefaultHashCodeComputer.INSTANCE.computeHashCode(key), name);
+                assertEquals(NativeHashCodeComputer.INSTANCE.computeHashCode(key), VectorizedNativeHashCodeComputer.INSTANCE.computeHashCode(key), name);
+                assertEquals(NativeHashCodeComputer.INSTANCE.hash64(key), VectorizedNativeHashCodeComputer.INSTANCE.hash64(key), name);
+
+                // a key in the middle of an array, past an offset
+                final long address = Unsafe.ARRAY_BYTE_BASE_OFFSET;
+                assertEquals(DefaultHashCodeComputer.INSTANCE.hashCode(bytes, UNSAFE, address, 1, length),
+                        VectorizedDefaultHashCodeComputer.INSTANCE.hashCode(bytes, UNSAFE, address, 1, length), name);
+                assertEquals(NativeHashCodeComputer.INSTANCE.hashCode(bytes, UNSAFE, address, 1, length),
+                        VectorizedNativeHashCodeComputer.INSTANCE.hashCode(bytes, UNSAFE, address, 1, length), name);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("computers")
+    void hashAll_matchesHashCode(HashCodeComputer computer) {
+        final Random random = new Random(42);
+        for (int n = 0; n <= 40; n++) {
+            AsciiString[] keys = new AsciiString[n + 1];
+            for (int i = 0; i < keys.length; i++) {
+                byte[] bytes = new byte[random.nextInt(80)];
+                random.nextBytes(bytes);
+                keys[i] = new AsciiString(bytes.length).append(bytes);
+                if (random.nextInt(4) == 0) {
+                    computer.hashCode(keys[i]); // some keys come with a cached hash code
+                }
+            }
+
+            int[] out = new int[n + 1];
+            out[n] = 42;
+            computer.hashAll(keys, n, out);
+            for (int i = 0; i < n; i++) {
+                assertEquals(computer.computeHashCode(keys[i]), out[i], "n " + n + ", key " + i);
+                assertEquals(out[i], (int) keys[i].getCachedHash(), "n " + n + ", key " + i);
+            }
+            assertEquals(42, out[n]);
+        }
+    }
+
+    @Test
+    void prefixSkipping_learnsPrefixUpToLastSeparator() {
+        AsciiString[] fixedPrefix = new AsciiString[100];
+        for (int i = 0; i < fixedPrefix.length; i++) {
+            fixedPrefix[i] = new AsciiString("SOURCE13:").append(1_000_000_000_000L + i);
+        }
+        assertEquals("SOURCE13:", PrefixSkippingHashCodeComputer.learn(fixedPrefix, fixedPrefix.length).getPrefix());
+
+        AsciiString[] paths = {new AsciiString("user/eu/1"), new AsciiString("user/eu/22"), new AsciiString("user/us/3")};
+        assertEquals("user/", PrefixSkippingHashCodeComputer.learn(paths, paths.length).getPrefix());
+        assertEquals("user/eu/", PrefixSkippingHashCodeComputer.learn(paths, 2).getPrefix());
+
+        AsciiString[] numbers = {new AsciiString("1000000000001"), new AsciiString("1000000000002")};
+        assertEquals("", PrefixSkippingHashCodeComputer.learn(numbers, numbers.length).getPrefix());
+        assertEquals("", PrefixSkippingHashCodeComputer.learn(numbers, 0).getPrefix());
+    }
+
+    @Test
+    void prefixSkipping_hashesKeysWithoutPrefixWhole() {
+        PrefixSkippingHashCodeComputer computer = new PrefixSkippingHashCodeComputer("SOURCE13:");
+        AsciiString[] keys = {new AsciiString(""), new AsciiString("42"), new AsciiString("SOURCE13"),
+                new AsciiString("SOURCE13:"), new AsciiString("SOURCE13:42"), new AsciiString("SOURCE14:42"),
+                new AsciiString("42SOURCE13:")};
+        Set<Integer> hashCodes = new HashSet<>();
+        for (AsciiString key : keys) {
+            assertEquals(computer.computeHashCode(new AsciiString(key.toString())), computer.computeHashCode(key), key.toString());
+            hashCodes.add(computer.computeHashCode(key));
+        }
+        assertEquals(keys.length, hashCodes.size(), "a prefixed key and its bare suffix must not collide");
+    }
+
+    @Test
+    void prefixSkipping_spreadsFixedPrefixKeys() {
+        final int keys = 1 << 16;
+        final int buckets = 2 * keys;
+        final int[] counts = new int[buckets];
+        final HashCodeComputer computer = new PrefixSkippingHashCodeComputer("SOURCE13:");
+
+        int maxLoad = 0;
+        for (int i = 0; i < keys; i++) {
+            AsciiString key = new AsciiString("SOURCE13:").append(1_000_000_000_000L + i);
+            maxLoad = Math.max(maxLoad, ++counts[computer.modPowerOfTwoHashCode(key, buckets)]);
+        }
+        assertTrue(maxLoad <= 8, "max bucket load " + maxLoad);
+    }
+}
@@ -3,8 +3,15 @@ package maps;
 import hashing.DefaultHashCodeComputer;
 import hashing.HashCodeComputer;
 import hashing.NativeHashCodeComputer;
+import hashing.XxHashCodeComputer;
 import internal.AsciiString;
 import internal.DataPayload;
+import internal.EvictionPolicy;
+import internal.FifoEvictionPolicy;
+import internal.InactiveList;
+import internal.KeyComparison;
+import internal.LruEvictionPolicy;
+import internal.TinyLfuEvictionPolicy;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
@@ -12,8 +19,10 @@ import org.junit.jupiter.api.TestMethodOrder;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
+import sun.misc.Unsafe;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -33,6 +42,19 @@ class HashMapsTest {
 
     private static final HashCodeComputer HASH_COMPUTER = DefaultHashCodeComputer.INSTANCE;
 
+    // puts every key into the same bucket, so HashSelectingCache always moves away from it
+    private static final HashCodeComputer SAME_HASH_COMPUTER = new HashCodeComputer() {
+        @Override
+        protected int hashCode(byte[] array, Unsafe unsafeAccess, long address, int offset, int length) {
+            return 42;
+        }
+
+        @Override
+        public int hashCode(long key) {
+            return 42;
+        }
+    };
+
     // Test data factory for different cache implementations
     static Stream<CacheFactory> cacheFactories() {
         return Stream.of(
@@ -42,6 +64,44 @@ class HashMapsTest {
                         new LinearProbingHashMap(active, inactive, HASH_COMPUTER)),
                 new CacheFactory("RobinHoodHashMap", (active, inactive) ->
                         new RobinHoodHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("SwissTableHashMap", (active, inactive) ->
+                        new SwissTableHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("LinearProbingHashMap (incremental resize)", (active, inactive) ->
+                        new LinearProbingHashMap(active, inactive, HASH_COMPUTER, LinearProbingHashMap.DEFAULT_LOAD_FACTOR, true)),
+                new CacheFactory("RawLinearProbingHashMap (incremental resize)", (active, inactive) ->
+                        new RawLinearProbingHashMap(active, inactive, HASH_COMPUTER, RawLinearProbingHashMap.DEFAULT_LOAD_FACTOR, RawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH, true)),
+                new CacheFactory("NativeLinearProbingHashMap (incremental resize)", (active, inactive) ->
+                        new NativeLinearProbingHashMap(active, inactive, HASH_COMPUTER, NativeLinearProbingHashMap.DEFAULT_LOAD_FACTOR, true)),
+                new CacheFactory("LinearProbingHashMap (cached hash codes)", (active, inactive) ->
+                        new LinearProbingHashMap(active, inactive, HASH_COMPUTER, LinearProbingHashMap.DEFAULT_LOAD_FACTOR, false, true)),
+                new CacheFactory("RawLinearProbingHashMap (cached hash codes)", (active, inactive) ->
+                        new RawLinearProbingHashMap(active, inactive, HASH_COMPUTER, RawLinearProbingHashMap.DEFAULT_LOAD_FACTOR, RawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH, false, true)),
+                new CacheFactory("NativeLinearProbingHashMap (cached hash codes)", (active, inactive) ->
+                        new NativeLinearProbingHashMap(active, inactive, HASH_COMPUTER, NativeLinearProbingHashMap.DEFAULT_LOAD_FACTOR, false, true)),
+                new CacheFactory("OffHeapRawLinearProbingHashMap", (active, inactive) ->
+                        new OffHeapRawLinearProbingHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("OffHeapRawLinearProbingHashMap (huge page alignment)", (active, inactive) ->
+                        new OffHeapRawLinearProbingHashMap(active, inactive, HASH_COMPUTER, OffHeapRawLinearProbingHashMap.DEFAULT_LOAD_FACTOR,
+                                OffHeapRawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH, OffHeapRawLinearProbingHashMap.HUGE_PAGE_ALIGNMENT)),
+                new CacheFactory("ArenaRawLinearProbingHashMap", (active, inactive) ->
+                        new ArenaRawLinearProbingHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("StripedHashMap (single segment)", (active, inactive) ->
+                        new StripedHashMap(active, inactive, HASH_COMPUTER, 1)),
+                new CacheFactory("SeqLockLinearProbingHashMap", (active, inactive) ->
+                        new SeqLockLinearProbingHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("DecimalKeyCache", (active, inactive) ->
+                        new DecimalKeyCache(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("InlineKeyLinearProbingHashMap", (active, inactive) ->
+                        new InlineKeyLinearProbingHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("CuckooHashMap", (active, inactive) ->
+                        new CuckooHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("HopscotchHashMap", (active, inactive) ->
+                        new HopscotchHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("StableSlotHashMap", (active, inactive) ->
+                        new StableSlotHashMap(active, inactive, HASH_COMPUTER)),
+                new CacheFactory("HashSelectingCache", (active, inactive) ->
+                        new HashSelectingCache(computer -> new LinearProbingHashMap(active, inactive, computer),
+                                new HashCodeComputer[]{SAME_HASH_COMPUTER, HASH_COMPUTER}, 512, 1_000_000_000L)),
                 new CacheFactory("JavaHashMap", JavaHashMap::new)
         );
     }
@@ -65,6 +125,405 @@ class HashMapsTest {
         assertNull(cache.get(new AsciiString("XXX")));
     }
 
+    @ParameterizedTest(name = "{0}: long keys differing in one byte")
+    @MethodSource("cacheFactories")
+    void longKeysDifferingInOneByte(CacheFactory factory) {
+        Cache cache = factory.create(64, 2);
+        List<DataPayload> entries = new ArrayList<>();
+        for (int length : new int[]{KeyComparison.VECTOR_THRESHOLD, 31, 36, 48, 60}) {
+            String key = "k".repeat(length);
+            entries.add(new DataPayload(key));
+            for (int position : new int[]{0, length / 2, length - 1}) {
+                entries.add(new DataPayload(key.substring(0, position) + 'x' + key.substring(position + 1)));
+            }
+        }
+        for (DataPayload entry : entries) {
+            assertTrue(cache.putIfEmpty(entry), entry.getKey().toString());
+        }
+
+        for (DataPayload entry : entries) {
+            assertSame(entry, cache.get(new AsciiString(entry.getKey().toString())));
+        }
+        assertNull(cache.get(new AsciiString("k".repeat(35) + 'y')));
+    }
+
+    @Test
+    void keyComparison_findsEveryDifferingByte() {
+        final int offset = 3; // keys not at the array start
+        for (int length = 0; length <= 80; length++) {
+            byte[] lhs = new byte[offset + length];
+            byte[] rhs = new byte[length];
+            for (int i = 0; i < length; i++) {
+                lhs[offset + i] = rhs[i] = (byte) ('a' + i % 26);
+            }
+            assertTrue(KeyComparison.equals(lhs, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, rhs, Unsafe.ARRAY_BYTE_BASE_OFFSET, length), "length " + length);
+
+            for (int i = 0; i < length; i++) {
+                rhs[i] ^= 1;
+                assertFalse(KeyComparison.equals(lhs, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, rhs, Unsafe.ARRAY_BYTE_BASE_OFFSET, length), "length " + length + ", byte " + i);
+                assertFalse(KeyComparison.scalarEquals(lhs, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, rhs, Unsafe.ARRAY_BYTE_BASE_OFFSET, length), "length " + length + ", byte " + i);
+                if (length >= 16) {
+                    assertFalse(KeyComparison.vectorEquals(lhs, offset, rhs, 0, length), "length " + length + ", byte " + i);
+                }
+                rhs[i] ^= 1;
+            }
+        }
+    }
+
+    static Stream<CacheFactory> handleCacheFactories() {
+        return cacheFactories().filter(factory -> {
+            try {
+                factory.create(16, 1).getByHandle(Cache.NO_HANDLE);
+                return true;
+            } catch (UnsupportedOperationException e) {
+                return false;
+            }
+        });
+    }
+
+    @ParameterizedTest(name = "{0}: handles")
+    @MethodSource("handleCacheFactories")
+    void handles(CacheFactory factory) {
+        Cache cache = factory.create(16, 1);
+        assertNull(cache.getByHandle(Cache.NO_HANDLE));
+
+        DataPayload d1 = new DataPayload("O1");
+        long h1 = cache.putIfEmptyWithHandle(d1);
+        assertNotEquals(Cache.NO_HANDLE, h1);
+        assertEquals(Cache.NO_HANDLE, cache.putIfEmptyWithHandle(new DataPayload("O1")));
+        assertSame(d1, cache.getByHandle(h1));
+
+        DataPayload d2 = new DataPayload("O2");
+        long h2 = cache.putIfEmptyWithHandle(d2);
+        assertSame(d2, cache.getByHandle(h2));
+        assertTrue(cache.deactivateByHandle(h1));
+        assertSame(d1, cache.getByHandle(h1)); // inactive entries stay in the cache
+        assertTrue(cache.deactivateByHandle(h2)); // evicts O1
+
+        assertNull(cache.getByHandle(h1));
+        assertFalse(cache.deactivateByHandle(h1));
+        assertNull(cache.get(new AsciiString("O1")));
+
+        // the freed slot may be reused by another entry or by the same entry again: old handle stays stale
+        long h1Again = cache.putIfEmptyWithHandle(d1);
+        assertNull(cache.getByHandle(h1));
+        assertSame(d1, cache.getByHandle(h1Again));
+    }
+
+    @ParameterizedTest(name = "{0}: handles stay stale when a plain put reuses the slot")
+    @MethodSource("handleCacheFactories")
+    void handlesStaleAfterPlainPut(CacheFactory factory) {
+        Cache cache = factory.create(16, 1);
+        DataPayload orderA = new DataPayload("orderA");
+        long handleA = cache.putIfEmptyWithHandle(orderA);
+        assertTrue(cache.deactivateByHandle(handleA));
+        DataPayload orderX = new DataPayload("orderX");
+        assertTrue(cache.putIfEmpty(orderX));
+        cache.deactivate(orderX); // evicts orderA
+        assertNull(cache.getByHandle(handleA));
+
+        DataPayload orderB = new DataPayload("orderB");
+        assertTrue(cache.putIfEmpty(orderB));
+        assertNull(cache.getByHandle(handleA));
+
+        cache.deactivate(orderB); // evicts orderX
+        assertTrue(cache.putIfEmpty(orderA)); // the same entry again, without a handle
+        assertNull(cache.getByHandle(handleA));
+        assertSame(orderA, cache.get(new AsciiString("orderA")));
+    }
+
+    @ParameterizedTest(name = "{0}: handles are either valid or stale across resize")
+    @MethodSource("handleCacheFactories")
+    void handlesAcrossResize(CacheFactory factory) {
+        Cache cache = factory.create(16, 1);
+        int initialCapacity = cache.capacity();
+        Map<Long, DataPayload> handles = new HashMap<>();
+        for (int i = 0; cache.capacity() == initialCapacity || i < 4 * initialCapacity; i++) {
+            DataPayload entry = new DataPayload("SOURCE13:" + i);
+            handles.put(cache.putIfEmptyWithHandle(entry), entry);
+        }
+
+        for (Map.Entry<Long, DataPayload> handle : handles.entrySet()) {
+            DataPayload entry = cache.getByHandle(handle.getKey());
+            assertTrue(entry == null || entry == handle.getValue());
+            assertSame(handle.getValue(), cache.get(handle.getValue().getKey()));
+        }
+    }
+
+    @Test
+    void handlesAreInvalidatedByResize() {
+        Cache[] caches = {
+                new ChainingHashMap(16, 1, HASH_COMPUTER),
+                new LinearProbingHashMap(16, 1, HASH_COMPUTER)
+        };
+        for (Cache cache : caches) {
+            DataPayload first = new DataPayload("first");
+            long handle = cache.putIfEmptyWithHandle(first);
+            int capacity = cache.capacity();
+            for (int i = 0; cache.capacity() == capacity; i++) {
+                cache.putIfEmpty(new DataPayload(String.valueOf(i)));
+            }
+            assertNull(cache.getByHandle(handle), cache.getClass().getSimpleName());
+            assertSame(first, cache.get(new AsciiString("first")));
+        }
+    }
+
+    @ParameterizedTest(name = "{0}: reactivate")
+    @MethodSource("cacheFactories")
+    void reactivate(CacheFactory factory) {
+        Cache cache = factory.create(16, 2);
+        DataPayload d1 = new DataPayload("O1");
+        DataPayload d2 = new DataPayload("O2");
+        DataPayload d3 = new DataPayload("O3");
+        assertTrue(cache.putIfEmpty(d1));
+        assertTrue(cache.putIfEmpty(d2));
+        assertTrue(cache.putIfEmpty(d3));
+        cache.deactivate(d1);
+        cache.deactivate(d2);
+
+        assertTrue(cache.reactivate(d1));
+        assertFalse(cache.reactivate(d1)); // active already
+        assertFalse(cache.reactivate(d3));
+
+        cache.deactivate(d3); // inactive: O2, O3
+        assertEquals(3, cache.size());
+        cache.deactivate(d1); // O1 goes after O3 and evicts O2
+        assertEquals(2, cache.size());
+        assertNull(cache.get(new AsciiString("O2")));
+        assertFalse(cache.reactivate(d2)); // evicted
+
+        DataPayload d4 = new DataPayload("O4");
+        assertTrue(cache.putIfEmpty(d4));
+        cache.deactivate(d4); // evicts O3
+        assertNull(cache.get(new AsciiString("O3")));
+        assertSame(d1, cache.get(new AsciiString("O1")));
+        assertSame(d4, cache.get(new AsciiString("O4")));
+    }
+
+    @ParameterizedTest(name = "{0}: batched put and get")
+    @MethodSource("cacheFactories")
+    void batchedPutAndGet(CacheFactory factory) {
+        Cache cache = factory.create(16, 4);
+        DataPayload existing = new DataPayload("K7");
+        assertTrue(cache.putIfEmpty(existing));
+
+        // the batch grows the table, repeats a key and a key already present
+        DataPayload[] batch = new DataPayload[70];
+        for (int i = 0; i < 64; i++) {
+            batch[i] = new DataPayload("K" + i);
+        }
+        batch[64] = new DataPayload("K3");
+        boolean[] added = new boolean[batch.length];
+        added[64] = true;
+        cache.putAllIfEmpty(batch, 65, added);
+        for (int i = 0; i < 64; i++) {
+            assertEquals(i != 7, added[i], "K" + i);
+        }
+        assertFalse(added[64]);
+        assertEquals(64, cache.size());
+
+        AsciiString[] keys = new AsciiString[70];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new AsciiString("K" + (i * 2 + 1));
+        }
+        DataPayload[] found = new DataPayload[keys.length];
+        Arrays.fill(found, existing);
+        cache.getAll(keys, 40, found);
+        for (int i = 0; i < 40; i++) {
+            DataPayload expected = (i == 3) ? existing : (i * 2 + 1 < 64) ? batch[i * 2 + 1] : null;
+            assertSame(expected, found[i], keys[i].toString());
+        }
+        assertSame(existing, found[40]); // beyond n
+    }
+
+    static Stream<CacheFactory> ttlCacheFactories() {
+        return cacheFactories().filter(factory -> {
+            try {
+                factory.create(16, 1).setInactiveTtl(InactiveList.NO_TTL);
+                return true;
+            } catch (UnsupportedOperationException e) {
+                return false;
+            }
+        });
+    }
+
+    @ParameterizedTest(name = "{0}: inactive entries expire after TTL")
+    @MethodSource("ttlCacheFactories")
+    void inactiveTtl(CacheFactory factory) {
+        Cache cache = factory.create(16, 2);
+        cache.setInactiveTtl(100);
+        DataPayload d1 = new DataPayload("O1");
+        DataPayload d2 = new DataPayload("O2");
+        DataPayload d3 = new DataPayload("O3");
+        DataPayload d4 = new DataPayload("O4");
+        DataPayload d5 = new DataPayload("O5");
+        for (DataPayload entry : List.of(d1, d2, d3, d4, d5)) {
+            assertTrue(cache.putIfEmpty(entry));
+        }
+
+        cache.deactivate(d1, 1000);
+        cache.deactivate(d2, 1050);
+        assertTrue(cache.reactivate(d2)); // reactivated entries never expire
+        assertEquals(0, cache.tick(1099));
+        assertEquals(5, cache.size());
+
+        assertEquals(1, cache.tick(1100));
+        assertNull(cache.get(new AsciiString("O1")));
+        assertSame(d2, cache.get(new AsciiString("O2")));
+        assertEquals(0, cache.tick(1000)); // the clock does not go back
+
+        // count cap still applies
+        cache.deactivate(d4, 1110);
+        cache.deactivate(d5, 1120);
+        cache.deactivate(d2, 1130); // evicts O4
+        assertNull(cache.get(new AsciiString("O4")));
+        assertEquals(3, cache.size());
+
+        assertEquals(1, cache.tick(1225)); // O5 only
+        assertSame(d2, cache.get(new AsciiString("O2")));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.tick(Long.MAX_VALUE));
+        assertEquals(1, cache.size());
+        assertSame(d3, cache.get(new AsciiString("O3")));
+    }
+
+    static Stream<CacheFactory> evictionPolicyCacheFactories() {
+        return cacheFactories().filter(factory -> {
+            try {
+                factory.create(16, 1).setEvictionPolicy(FifoEvictionPolicy::new);
+                return true;
+            } catch (UnsupportedOperationException e) {
+                return false;
+            }
+        });
+    }
+
+    @ParameterizedTest(name = "{0}: LRU eviction policy")
+    @MethodSource("evictionPolicyCacheFactories")
+    void lruEvictionPolicy(CacheFactory factory) {
+        Cache cache = factory.create(16, 2);
+        cache.setEvictionPolicy(LruEvictionPolicy::new);
+        DataPayload d1 = new DataPayload("O1");
+        DataPayload d2 = new DataPayload("O2");
+        DataPayload d3 = new DataPayload("O3");
+        DataPayload d4 = new DataPayload("O4");
+        for (DataPayload entry : List.of(d1, d2, d3, d4)) {
+            assertTrue(cache.putIfEmpty(entry));
+        }
+
+        cache.deactivate(d1);
+        cache.deactivate(d2);
+        assertThrows(IllegalStateException.class, () -> cache.setEvictionPolicy(FifoEvictionPolicy::new));
+        assertSame(d1, cache.get(new AsciiString("O1"))); // O2 is the least recently used now
+        cache.deactivate(d3);
+        assertNull(cache.get(new AsciiString("O2")));
+        assertSame(d1, cache.get(new AsciiString("O1")));
+
+        cache.deactivate(d4); // evicts O3
+        assertNull(cache.get(new AsciiString("O3")));
+        assertSame(d1, cache.get(new AsciiString("O1")));
+        assertSame(d4, cache.get(new AsciiString("O4")));
+        assertEquals(2, cache.size());
+    }
+
+    @ParameterizedTest(name = "{0}: W-TinyLFU eviction policy")
+    @MethodSource("evictionPolicyCacheFactories")
+    void tinyLfuEvictionPolicy(CacheFactory factory) {
+        final int maxInactive = 64;
+        Cache cache = factory.create(16, maxInactive);
+        cache.setEvictionPolicy(TinyLfuEvictionPolicy::new);
+
+        DataPayload hot = new DataPayload("HOT");
+        assertTrue(cache.putIfEmpty(hot));
+        for (int i = 0; i < 10; i++) {
+            assertSame(hot, cache.get(new AsciiString("HOT")));
+        }
+        cache.deactivate(hot);
+
+        // a scan of entries deactivated once does not flush the frequently accessed one
+        for (int i = 0; i < 4 * maxInactive; i++) {
+            DataPayload cold = new DataPayload("COLD" + i);
+            assertTrue(cache.putIfEmpty(cold));
+            cache.deactivate(cold);
+            assertEquals(Math.min(i + 2, maxInactive), cache.size());
+        }
+        assertSame(hot, cache.get(new AsciiString("HOT")));
+        assertEquals(maxInactive, cache.size());
+
+        assertTrue(cache.reactivate(hot));
+        assertEquals(maxInactive, cache.size());
+        assertFalse(cache.reactivate(hot));
+    }
+
+    @ParameterizedTest(name = "{0}: deactivating an inactive entry again evicts nothing")
+    @MethodSource("evictionPolicyCacheFactories")
+    void doubleDeactivation(CacheFactory factory) {
+        for (EvictionPolicy.Factory policy : List.<EvictionPolicy.Factory>of(FifoEvictionPolicy::new, LruEvictionPolicy::new, TinyLfuEvictionPolicy::new)) {
+            Cache cache = factory.create(16, 2);
+            cache.setEvictionPolicy(policy);
+            DataPayload d1 = new DataPayload("O1");
+            DataPayload d2 = new DataPayload("O2");
+            assertTrue(cache.putIfEmpty(d1));
+            assertTrue(cache.putIfEmpty(d2));
+            cache.deactivate(d1);
+            cache.deactivate(d2);
+
+            assertThrows(IllegalArgumentException.class, () -> cache.deactivate(d2));
+            assertEquals(2, cache.size());
+            assertTrue(cache.reactivate(d1));
+            assertTrue(cache.reactivate(d2));
+        }
+    }
+
+    static Stream<CacheFactory> probeLengthGuardCacheFactories() {
+        return cacheFactories().filter(factory -> {
+            try {
+                factory.create(16, 1).setProbeLengthGuard(Integer.MAX_VALUE, null);
+                return true;
+            } catch (UnsupportedOperationException e) {
+                return false;
+            }
+        });
+    }
+
+    @ParameterizedTest(name = "{0}: probe length guard re-seeds colliding keys")
+    @MethodSource("probeLengthGuardCacheFactories")
+    void probeLengthGuard(CacheFactory factory) {
+        Cache cache = factory.create(16, 4);
+        List<Integer> reseeds = new ArrayList<>();
+        cache.setProbeLengthGuard(16, (probeLength, size, capacity) -> reseeds.add(probeLength));
+
+        List<DataPayload> entries = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            DataPayload entry = new DataPayload(collidingKey(i, 8));
+            entries.add(entry);
+            assertTrue(cache.putIfEmpty(entry));
+        }
+        assertEquals(17, (int) reseeds.get(0));
+        assertTrue(reseeds.size() <= 2, "seeded keys keep colliding: " + reseeds);
+
+        for (DataPayload entry : entries) {
+            assertSame(entry, cache.get(entry.getKey()));
+        }
+        assertFalse(cache.putIfEmpty(new DataPayload(collidingKey(7, 8))));
+
+        for (int i = 0; i < 8; i++) {
+            cache.deactivate(entries.get(i));
+        }
+        assertEquals(252, cache.size());
+        assertNull(cache.get(entries.get(3).getKey()));
+        assertSame(entries.get(4), cache.get(entries.get(4).getKey()));
+    }
+
+    // "Aa" and "BB" blocks: all keys of the same block count have the same 31 * h + b hash code
+    private static String collidingKey(int i, int blocks) {
+        StringBuilder key = new StringBuilder();
+        for (int block = 0; block < blocks; block++) {
+            key.append(((i >>> block) & 1) == 0 ? "Aa" : "BB");
+        }
+        return key.toString();
+    }
+
     @ParameterizedTest(name = "{0}: deactivate with maxInactive=1")
     @MethodSource("cacheFactories")
     void basicDeactivateWithMaxInactive1(CacheFactory factory) {
@@ -215,6 +674,12 @@ class HashMapsTest {
         testFifoEviction(new RobinHoodHashMap(16, 4, HASH_COMPUTER));
     }
 
+    @Test
+    @DisplayName("SwissTableHashMap: FIFO eviction order for inactive entries")
+    void fifoEviction_swissTable() {
+        testFifoEviction(new SwissTableHashMap(16, 4, HASH_COMPUTER));
+    }
+
     @Test
     @DisplayName("JavaHashMap: FIFO eviction order for inactive entries")
     void fifoEviction_java() {
@@ -276,6 +741,12 @@ class HashMapsTest {
         testFifoMixedFlow(new RobinHoodHashMap(16, 4, HASH_COMPUTER));
     }
 
+    @Test
+    @DisplayName("SwissTableHashMap: FIFO with mixed active and deactivate flow")
+    void fifoEviction_mixedFlow_swissTable() {
+        testFifoMixedFlow(new SwissTableHashMap(16, 4, HASH_COMPUTER));
+    }
+
     @Test
     @DisplayName("JavaHashMap: FIFO with mixed active and deactivate flow")
     void fifoEviction_mixedFlow_java() {
@@ -347,6 +818,677 @@ class HashMapsTest {
                 maxInactiveDataCount, totalEntries);
     }
 
+    @ParameterizedTest(name = "fuzzyTest SwissTableHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_swissTable(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new SwissTableHashMap(16, maxInactiveDataCount, HASH_COMPUTER),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @ParameterizedTest(name = "fuzzyTest incremental resize LinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_incrementalLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new LinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER, LinearProbingHashMap.DEFAULT_LOAD_FACTOR, true),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @ParameterizedTest(name = "fuzzyTest incremental resize RawLinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_incrementalRawLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new RawLinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER, RawLinearProbingHashMap.DEFAULT_LOAD_FACTOR, RawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH, true),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @ParameterizedTest(name = "fuzzyTest incremental resize NativeLinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_incrementalNativeLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new NativeLinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER, NativeLinearProbingHashMap.DEFAULT_LOAD_FACTOR, true),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @ParameterizedTest(name = "fuzzyTest cached hash codes LinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_cachedHashLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new LinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER, LinearProbingHashMap.DEFAULT_LOAD_FACTOR, true, true),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @ParameterizedTest(name = "fuzzyTest cached hash codes RawLinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_cachedHashRawLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new RawLinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER, RawLinearProbingHashMap.DEFAULT_LOAD_FACTOR, RawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH, true, true),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @ParameterizedTest(name = "fuzzyTest cached hash codes NativeLinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_cachedHashNativeLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new NativeLinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER, NativeLinearProbingHashMap.DEFAULT_LOAD_FACTOR, true, true),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @ParameterizedTest(name = "fuzzyTest OffHeapRawLinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_offHeapRawLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        try (OffHeapRawLinearProbingHashMap map = new OffHeapRawLinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER)) {
+            fuzzyTestImpl(map, maxInactiveDataCount, totalEntries);
+        }
+    }
+
+    @Test
+    void offHeapRawLinearProbing_rejectsTooLongKey() {
+        try (OffHeapRawLinearProbingHashMap map = new OffHeapRawLinearProbingHashMap(16, 4, HASH_COMPUTER)) {
+            DataPayload tooLong = new DataPayload("X".repeat(OffHeapRawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH));
+            assertThrows(IllegalArgumentException.class, () -> map.putIfEmpty(tooLong));
+        }
+    }
+
+    @Test
+    void rawLinearProbing_rejectsTooLongKey() {
+        Cache map = new RawLinearProbingHashMap(16, 4, HASH_COMPUTER);
+        DataPayload longest = new DataPayload("X".repeat(RawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH - 4));
+        DataPayload tooLong = new DataPayload("X".repeat(RawLinearProbingHashMap.DEFAULT_MAX_KEY_LENGTH - 3));
+
+        assertTrue(map.putIfEmpty(longest));
+        assertThrows(IllegalArgumentException.class, () -> map.putIfEmpty(tooLong));
+        assertEquals(1, map.size());
+        assertSame(longest, map.get(longest.getKey()));
+    }
+
+    @ParameterizedTest(name = "fuzzyTest ArenaRawLinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_arenaRawLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new ArenaRawLinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @Test
+    void arenaRawLinearProbing_reusesFreedKeySpace() {
+        final int maxInactive = 8;
+        ArenaRawLinearProbingHashMap map = new ArenaRawLinearProbingHashMap(16, maxInactive, HASH_COMPUTER);
+
+        // key lengths vary from 1 to 300 bytes, so both free lists and big chunks are exercised
+        List<DataPayload> inserted = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            DataPayload entry = new DataPayload(i + ":" + "K".repeat(i % 300));
+            assertTrue(map.putIfEmpty(entry));
+            map.deactivate(entry);
+            inserted.add(entry);
+        }
+
+        assertEquals(maxInactive, map.size());
+        for (int i = inserted.size() - maxInactive; i < inserted.size(); i++) {
+            assertSame(inserted.get(i), map.get(inserted.get(i).getKey()));
+        }
+        assertNull(map.get(inserted.get(inserted.size() - maxInactive - 1).getKey()));
+        // 9 live keys take at most ~3KB, the arena is allowed to be twice as big plus rounding to power of 2
+        assertTrue(map.keyStorageBytes() <= 16 * 1024, "Arena must not grow with the number of freed keys: " + map.keyStorageBytes());
+    }
+
+    @ParameterizedTest(name = "fuzzyTest single segment StripedHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_stripedSingleSegment(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new StripedHashMap(16, maxInactiveDataCount, HASH_COMPUTER, 1),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @Test
+    void striped_inactiveRetentionIsPerSegment() {
+        final int segments = 4;
+        final int maxInactivePerSegment = 2;
+        StripedHashMap map = new StripedHashMap(16, segments * maxInactivePerSegment, HASH_COMPUTER, segments);
+
+        List<DataPayload> inserted = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            DataPayload entry = new DataPayload(id("S", i));
+            assertTrue(map.putIfEmpty(entry));
+            map.deactivate(entry);
+            inserted.add(entry);
+        }
+
+        // every segment keeps its own most recent inactive entries
+        int[] retained = new int[segments];
+        for (int i = inserted.size() - 1; i >= 0; i--) {
+            DataPayload entry = inserted.get(i);
+            int segment = map.segmentFor(entry.getKey());
+            if (retained[segment] < maxInactivePerSegment) {
+                assertSame(entry, map.get(entry.getKey()));
+                retained[segment]++;
+            } else {
+                assertNull(map.get(entry.getKey()), "Evicted " + entry.getKey());
+            }
+        }
+        assertEquals(segments * maxInactivePerSegment, map.size());
+    }
+
+    @Test
+    void striped_concurrentWriters() throws Exception {
+        final int threads = 8;
+        final int keysPerThread = 20000;
+        final int maxInactive = 1024;
+        final StripedHashMap map = new StripedHashMap(16, maxInactive, HASH_COMPUTER, 16);
+
+        // every thread inserts its own keys, deactivates even ones and reads everything back
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < keysPerThread; i++) {
+                        DataPayload entry = new DataPayload(id("T" + thread + "_", i));
+                        assertTrue(map.putIfEmpty(entry));
+                        assertSame(entry, map.get(entry.getKey()));
+                        if (i % 2 == 0) {
+                            map.deactivate(entry);
+                        }
+                    }
+                    for (int i = 1; i < keysPerThread; i += 2) {
+                        String key = id("T" + thread + "_", i);
+                        assertEquals(key, map.get(new AsciiString(key)).getKey().toString());
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(List.of(), failures);
+        assertEquals(threads * keysPerThread / 2 + maxInactive, map.size());
+    }
+
+    @ParameterizedTest(name = "fuzzyTest SeqLockLinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_seqLockLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new SeqLockLinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @Test
+    void seqLock_readersAlwaysSeePermanentEntries() throws Exception {
+        final int permanentCount = 100;
+        final int maxInactive = 16;
+        // all keys collide: every free shifts the whole chain, including permanent entries
+        final SeqLockLinearProbingHashMap map = new SeqLockLinearProbingHashMap(16, maxInactive, CollidingHashCodeComputer.INSTANCE);
+
+        // permanent entries are never deactivated, the writer churns other keys around them
+        List<DataPayload> permanent = new ArrayList<>();
+        for (int i = 0; i < permanentCount; i++) {
+            DataPayload entry = new DataPayload(id("P", i));
+            assertTrue(map.putIfEmpty(entry));
+            permanent.add(entry);
+        }
+
+        final AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            readers.add(new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        for (DataPayload entry : permanent) {
+                            assertSame(entry, map.get(entry.getKey()));
+                        }
+                        assertNull(map.get(new AsciiString("missing")));
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+
+        for (int i = 0; i < 100_000; i++) {
+            DataPayload entry = new DataPayload(id("W", i));
+            assertTrue(map.putIfEmpty(entry));
+            map.deactivate(entry);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(List.of(), failures);
+        assertEquals(permanentCount + maxInactive, map.size());
+    }
+
+    private static final class CollidingHashCodeComputer extends HashCodeComputer {
+        static final CollidingHashCodeComputer INSTANCE = new CollidingHashCodeComputer();
+
+        @Override
+        protected int hashCode(byte[] array, Unsafe unsafeAccess, long address, int offset, int length) {
+            return 0;
+        }
+
+        @Override
+        public int hashCode(long key) {
+            return 0;
+        }
+    }
+
+    @Test
+    void longLinearProbing_fifoEviction() {
+        LongLinearProbingHashMap cache = new LongLinearProbingHashMap(16, 2, HASH_COMPUTER);
+        DataPayload[] entries = new DataPayload[4];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new DataPayload(String.valueOf(i));
+            assertTrue(cache.putIfEmpty(i, entries[i]));
+        }
+        assertFalse(cache.putIfEmpty(0, new DataPayload("0")));
+        assertEquals(4, cache.size());
+
+        cache.deactivate(entries[0]);
+        cache.deactivate(entries[1]);
+        cache.deactivate(entries[2]); // evicts 0
+
+        assertNull(cache.get(0));
+        assertSame(entries[1], cache.get(1));
+        assertSame(entries[2], cache.get(2));
+        assertSame(entries[3], cache.get(3));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void longLinearProbing_probeLengthGuard() {
+        LongLinearProbingHashMap cache = new LongLinearProbingHashMap(1024, 4, HASH_COMPUTER);
+        final int capacity = cache.capacity();
+        List<Integer> reseeds = new ArrayList<>();
+        cache.setProbeLengthGuard(16, (probeLength, size, cap) -> reseeds.add(probeLength));
+
+        // the unseeded mix of long keys is public, so keys sharing a home slot are easy to find
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; keys.size() < 64; key++) {
+            if (HASH_COMPUTER.modPowerOfTwoHashCode(key, capacity) == 0) {
+                keys.add(key);
+            }
+        }
+        for (long key : keys) {
+            assertTrue(cache.putIfEmpty(key, new DataPayload(String.valueOf(key))));
+        }
+        assertEquals(capacity, cache.capacity());
+        assertEquals(17, (int) reseeds.get(0));
+        assertTrue(reseeds.size() <= 2, "seeded keys keep colliding: " + reseeds);
+
+        for (long key : keys) {
+            assertEquals(new AsciiString(String.valueOf(key)), cache.get(key).getKey());
+        }
+        assertFalse(cache.putIfEmpty(keys.get(7), new DataPayload("7")));
+    }
+
+    @Test
+    void decimalKeyCache_parseDecimalKey() {
+        assertEquals(0, DecimalKeyCache.parseDecimalKey(new AsciiString("0")));
+        assertEquals(1_000_000_000_123L, DecimalKeyCache.parseDecimalKey(new AsciiString("1000000000123")));
+        assertEquals(999_999_999_999_999_999L, DecimalKeyCache.parseDecimalKey(new AsciiString("999999999999999999")));
+        assertEquals(-1, DecimalKeyCache.parseDecimalKey(new AsciiString("")));
+        assertEquals(-1, DecimalKeyCache.parseDecimalKey(new AsciiString("007")));
+        assertEquals(-1, DecimalKeyCache.parseDecimalKey(new AsciiString("-7")));
+        assertEquals(-1, DecimalKeyCache.parseDecimalKey(new AsciiString("12a")));
+        assertEquals(-1, DecimalKeyCache.parseDecimalKey(new AsciiString("1000000000000000000"))); // 19 digits
+    }
+
+    @Test
+    void decimalKeyCache_mixedKeys() {
+        final int maxInactive = 4;
+        DecimalKeyCache cache = new DecimalKeyCache(16, maxInactive, HASH_COMPUTER);
+        Random rnd = new Random(42);
+
+        // model: both key kinds share one FIFO of inactive entries
+        Map<String, DataPayload> model = new HashMap<>();
+        Deque<String> inactive = new ArrayDeque<>();
+        List<DataPayload> active = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            if (active.isEmpty() || rnd.nextInt(3) > 0) {
+                String key = rnd.nextBoolean() ? String.valueOf(1_000_000_000_000L + i) : id("K", i);
+                DataPayload entry = new DataPayload(key);
+                assertTrue(cache.putIfEmpty(entry));
+                assertFalse(cache.putIfEmpty(new DataPayload(key)));
+                model.put(key, entry);
+                active.add(entry);
+            } else {
+                DataPayload entry = active.remove(rnd.nextInt(active.size()));
+                String key = entry.getKey().toString();
+                cache.deactivate(entry);
+                if (inactive.size() == maxInactive) {
+                    model.remove(inactive.poll());
+                }
+                inactive.add(key);
+            }
+
+            assertEquals(model.size(), cache.size());
+        }
+
+        for (Map.Entry<String, DataPayload> e : model.entrySet()) {
+            assertSame(e.getValue(), cache.get(new AsciiString(e.getKey())));
+        }
+        assertNull(cache.get(new AsciiString(String.valueOf(999))));
+        assertNull(cache.get(new AsciiString("missing")));
+    }
+
+    @ParameterizedTest(name = "fuzzyTest InlineKeyLinearProbingHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_inlineKeyLinearProbing(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new InlineKeyLinearProbingHashMap(16, maxInactiveDataCount, HASH_COMPUTER),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @Test
+    void inlineKeyLinearProbing_inlineAndOverflowKeys() {
+        Cache cache = new InlineKeyLinearProbingHashMap(16, 4, HASH_COMPUTER);
+        String[] keys = {
+                "", "A", "A\0", "1000000000123", "SOURCE13:1000000", // inline, keys differing in length only
+                "1234567812345678", "12345678123456789",             // 16 bytes is inline, 17 is overflow
+                "SOURCE13:1000000000123", "\u00e9t\u00e9"                // long and non-ASCII keys overflow
+        };
+
+        List<DataPayload> entries = new ArrayList<>();
+        for (String key : keys) {
+            DataPayload entry = new DataPayload(key);
+            assertTrue(cache.putIfEmpty(entry), key);
+            entries.add(entry);
+        }
+        for (String key : keys) {
+            assertFalse(cache.putIfEmpty(new DataPayload(key)), key);
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            assertSame(entries.get(i), cache.get(new AsciiString(keys[i])));
+        }
+        // key stored in a bigger array than its length must be compared by its bytes only
+        assertSame(entries.get(1), cache.get(new AsciiString(32).append("A")));
+        assertNull(cache.get(new AsciiString("1000000000124")));
+        assertNull(cache.get(new AsciiString("123456781234567")));
+        assertNull(cache.get(new AsciiString("SOURCE13:1000000000124")));
+    }
+
+    @ParameterizedTest(name = "fuzzyTest CuckooHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_cuckoo(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new CuckooHashMap(16, maxInactiveDataCount, HASH_COMPUTER),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @Test
+    void cuckoo_kicksAndStashKeepInCachePosition() {
+        // equal hash codes: two buckets and the stash hold everything, the rest forces resizes and stash growth
+        CuckooHashMap cache = new CuckooHashMap(16, 4, CollidingHashCodeComputer.INSTANCE, 1.0f);
+        List<DataPayload> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            DataPayload entry = new DataPayload("K" + i);
+            assertTrue(cache.putIfEmpty(entry));
+            entries.add(entry);
+        }
+        assertEquals(20, cache.size());
+        for (DataPayload entry : entries) {
+            assertSame(entry, cache.get(entry.getKey()));
+            assertSame(entry, cache.entryAt(entry.getInCachePosition()));
+        }
+
+        // evicts entries by their positions, wherever kicks and stash moves have put them
+        for (int i = 0; i < 12; i++) {
+            cache.deactivate(entries.get(i));
+        }
+        assertEquals(12, cache.size());
+        for (int i = 0; i < 20; i++) {
+            DataPayload entry = entries.get(i);
+            if (i < 8) {
+                assertNull(cache.get(entry.getKey()));
+                assertEquals(-1, entry.getInCachePosition());
+            } else {
+                assertSame(entry, cache.get(entry.getKey()));
+                assertSame(entry, cache.entryAt(entry.getInCachePosition()));
+            }
+        }
+    }
+
+    @Test
+    void cuckoo_equalHashCodesDoNotGrowTable() {
+        CuckooHashMap cache = new CuckooHashMap(16, 16, CollidingHashCodeComputer.INSTANCE);
+        List<DataPayload> entries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            DataPayload entry = new DataPayload("K" + i);
+            assertTrue(cache.putIfEmpty(entry));
+            entries.add(entry);
+        }
+        assertEquals(512, cache.capacity()); // 300 entries at 0.9 load factor
+        assertEquals(300 - 2 * CuckooHashMap.BUCKET_SIZE, cache.stashCount);
+        for (DataPayload entry : entries) {
+            assertSame(entry, cache.get(entry.getKey()));
+            assertSame(entry, cache.entryAt(entry.getInCachePosition()));
+        }
+    }
+
+    @ParameterizedTest(name = "fuzzyTest HopscotchHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_hopscotch(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new HopscotchHashMap(16, maxInactiveDataCount, HASH_COMPUTER),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @Test
+    void hopscotch_highLoadFactorWithoutResize() {
+        HopscotchHashMap cache = new HopscotchHashMap(256, 16, XxHashCodeComputer.INSTANCE); // sequential default hash codes cluster
+        int entries = (int) (cache.capacity() * HopscotchHashMap.DEFAULT_LOAD_FACTOR);
+        for (int i = 0; i < entries; i++) {
+            assertTrue(cache.putIfEmpty(new DataPayload("SOURCE13:" + i)));
+        }
+        assertEquals(512, cache.capacity());
+        assertEquals(0, cache.stashCount);
+        for (int i = 0; i < entries; i++) {
+            DataPayload entry = cache.get(new AsciiString("SOURCE13:" + i));
+            assertNotNull(entry);
+            int home = cache.hashIndex(entry.getKey());
+            assertTrue(((entry.getInCachePosition() - home) & (cache.capacity() - 1)) < HopscotchHashMap.NEIGHBOURHOOD);
+        }
+    }
+
+    @Test
+    void hopscotch_overfullNeighbourhoodGoesToStash() {
+        HopscotchHashMap cache = new HopscotchHashMap(HopscotchHashMap.MIN_CAPACITY, 4, CollidingHashCodeComputer.INSTANCE, 1.0f);
+        List<DataPayload> entries = new ArrayList<>();
+        for (int i = 0; i < HopscotchHashMap.NEIGHBOURHOOD + 8; i++) {
+            DataPayload entry = new DataPayload("K" + i);
+            assertTrue(cache.putIfEmpty(entry));
+            entries.add(entry);
+        }
+        assertEquals(128, cache.capacity()); // grown by the load factor only
+        assertEquals(8, cache.stashCount);
+        for (DataPayload entry : entries) {
+            assertSame(entry, cache.get(entry.getKey()));
+            assertSame(entry, cache.entryAt(entry.getInCachePosition()));
+        }
+
+        for (int i = 0; i < 14; i++) {
+            cache.deactivate(entries.get(i));
+        }
+        assertEquals(HopscotchHashMap.NEIGHBOURHOOD - 2, cache.size());
+        assertEquals(0, cache.stashCount); // freed neighbourhood slots are taken by stashed entries
+        for (int i = 0; i < entries.size(); i++) {
+            DataPayload entry = entries.get(i);
+            if (i < 10) {
+                assertNull(cache.get(entry.getKey()));
+            } else {
+                assertSame(entry, cache.get(entry.getKey()));
+                assertSame(entry, cache.entryAt(entry.getInCachePosition()));
+            }
+        }
+    }
+
+    @Test
+    void hopscotch_equalHashCodesDoNotGrowTable() {
+        HopscotchHashMap cache = new HopscotchHashMap(16, 16, CollidingHashCodeComputer.INSTANCE);
+        List<DataPayload> entries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            DataPayload entry = new DataPayload("K" + i);
+            assertTrue(cache.putIfEmpty(entry));
+            entries.add(entry);
+        }
+        assertEquals(512, cache.capacity()); // 300 entries at 0.9 load factor
+        assertEquals(300 - HopscotchHashMap.NEIGHBOURHOOD, cache.stashCount);
+        for (DataPayload entry : entries) {
+            assertSame(entry, cache.get(entry.getKey()));
+        }
+    }
+
+    @ParameterizedTest(name = "fuzzyTest StableSlotHashMap [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_stableSlot(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new StableSlotHashMap(16, maxInactiveDataCount, HASH_COMPUTER),
+                maxInactiveDataCount, totalEntries);
+    }
+
+    @Test
+    void stableSlot_positionsNeverChange() {
+        StableSlotHashMap cache = new StableSlotHashMap(16, 8, HASH_COMPUTER);
+        List<DataPayload> entries = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            DataPayload entry = new DataPayload("SOURCE13:" + i);
+            assertTrue(cache.putIfEmpty(entry));
+            entries.add(entry);
+            positions.add(entry.getInCachePosition());
+            if (i % 50 != 0) {
+                cache.deactivate(entry); // evicts the oldest inactive entries, leaving tombstones and free slots
+            }
+        }
+        assertEquals(128, cache.capacity()); // tombstones are dropped without growing the index further
+
+        int live = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            DataPayload entry = entries.get(i);
+            if (entry.getInCachePosition() != -1) {
+                assertEquals(positions.get(i).intValue(), entry.getInCachePosition());
+                assertSame(entry, cache.get(entry.getKey()));
+                live++;
+            } else {
+                assertNull(cache.get(entry.getKey()));
+            }
+        }
+        assertEquals(live, cache.size());
+        assertEquals(32, cache.slab.length); // freed slab slots are reused
+    }
+
+    @Test
+    void hashSelecting_rehashKeepsEntriesAndInactiveOrder() {
+        HashSelectingCache cache = new HashSelectingCache(computer -> new LinearProbingHashMap(16, 4, computer),
+                new HashCodeComputer[]{SAME_HASH_COMPUTER, XxHashCodeComputer.INSTANCE}, 64, 1_000_000_000L);
+        cache.setInactiveTtl(1000);
+
+        DataPayload[] entries = new DataPayload[64];
+        for (int i = 0; i < entries.length - 1; i++) {
+            entries[i] = new DataPayload(id("K", i));
+            assertTrue(cache.putIfEmpty(entries[i]));
+        }
+        for (int i = 0; i < 4; i++) {
+            cache.deactivate(entries[i], 100 * (i + 1));
+        }
+        assertTrue(cache.reactivate(entries[1]));
+        cache.deactivate(entries[4], 500);
+        assertSame(SAME_HASH_COMPUTER, cache.getHashCodeComputer());
+
+        entries[63] = new DataPayload(id("K", 63));
+        assertTrue(cache.putIfEmpty(entries[63])); // the last sampled entry
+        assertSame(XxHashCodeComputer.INSTANCE, cache.getHashCodeComputer());
+        assertEquals(64, cache.size());
+        for (DataPayload entry : entries) {
+            assertSame(entry, cache.get(entry.getKey()));
+        }
+        assertFalse(cache.putIfEmpty(new DataPayload(id("K", 5))));
+
+        // K0, K2, K3, K4 are inactive in that order, with their deactivation times
+        cache.deactivate(entries[5]); // evicts K0
+        assertNull(cache.get(entries[0].getKey()));
+        assertSame(entries[2], cache.get(entries[2].getKey()));
+        assertFalse(cache.reactivate(entries[1]));
+
+        assertEquals(1, cache.tick(1300)); // K2 only
+        assertNull(cache.get(entries[2].getKey()));
+        assertSame(entries[3], cache.get(entries[3].getKey()));
+        assertEquals(62, cache.size());
+    }
+
     @ParameterizedTest(name = "fuzzyTest JavaHashMap [maxInactive={0}, totalEntries={1}]")
     @CsvSource({
             "1,200", "1,666",
@@ -360,14 +1502,29 @@ class HashMapsTest {
                 maxInactiveDataCount, totalEntries);
     }
 
+    @ParameterizedTest(name = "fuzzyTest HashSelectingCache [maxInactive={0}, totalEntries={1}]")
+    @CsvSource({
+            "1,200", "1,666",
+            "2,200", "2,666",
+            "4,200", "4,666",
+            "32,200", "32,666"
+    })
+    void fuzzyTest_hashSelecting(int maxInactiveDataCount, int totalEntries) {
+        fuzzyTestImpl(new HashSelectingCache(computer -> new LinearProbingHashMap(16, maxInactiveDataCount, computer),
+                        new HashCodeComputer[]{SAME_HASH_COMPUTER, XxHashCodeComputer.INSTANCE}, 128, 1_000_000_000L),
+                maxInactiveDataCount, totalEntries);
+    }
+
     enum FuzzyAction {
-        PUT, DEACTIVATE, GET, CHECK;
+        PUT, DEACTIVATE, REACTIVATE, GET, CHECK;
 
         static FuzzyAction get(int probability) {
             if (probability < 45)
                 return PUT;
             if (probability < 75)
                 return DEACTIVATE;
+            if (probability < 80)
+                return REACTIVATE;
             if (probability < 95)
                 return GET;
             return CHECK;
@@ -446,6 +1603,16 @@ class HashMapsTest {
                         }
                     }
                 }
+                case REACTIVATE -> {
+                    DataPayload payload = payloadBank.get(randomKey);
+                    if (payload != null) {
+                        boolean inactive = inactiveEntriesFIFO.remove(randomKey);
+                        assertEquals(inactive, cache.reactivate(payload), "reactivate " + randomKey);
+                        if (inactive) {
+                            activeEntries.add(randomKey);
+                        }
+                    }
+                }
                 case GET -> {
                     DataPayload got = cache.get(new AsciiString(randomKey));
                     boolean shouldBePresent = allEntries.containsKey(randomKey);